@@ -0,0 +1,123 @@
+package benchmark;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * A small benchmark harness in the spirit of JMH, for a tree that has no build
+ * file to pull JMH in. Every benchmark is run for some warmup iterations, so
+ * the JIT compiles it, and then for some measured iterations. An iteration
+ * calls the body until it has timed at least ITERATION_MILLIS, preparing fresh
+ * state without timing it before every call, and divides the time by the
+ * amount of operations performed. The results of the body are kept in a
+ * volatile field so the JIT cannot drop the work.
+ *
+ * Options, shared by every benchmark class:
+ *
+ * <pre>
+ * -f regex   only run the benchmarks whose name and parameters match
+ * -wi n      warmup iterations (default 3)
+ * -i n       measured iterations (default 5)
+ * -csv file  also append every result to a CSV file, to track them over time
+ * </pre>
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class Bench {
+
+	public static final int ITERATION_MILLIS = 10;
+
+	public static volatile Object sink;
+
+	// private fields
+	private Pattern filter;
+	private int warmupIterations = 3;
+	private int iterations = 5;
+	private String csv;
+
+	/**
+	 * @param args The command line options
+	 */
+	public Bench(String[] args) {
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].equals("-f"))
+				filter = Pattern.compile(args[i + 1]);
+			else if (args[i].equals("-wi"))
+				warmupIterations = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("-i"))
+				iterations = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("-csv"))
+				csv = args[i + 1];
+			else
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+		}
+		if (args.length % 2 != 0)
+			throw new IllegalArgumentException("Missing value for " + args[args.length - 1]);
+		if (iterations < 1 || warmupIterations < 0)
+			throw new IllegalArgumentException("Need at least one measured iteration");
+		System.out.printf("%-32s %-24s %14s %12s %14s%n", "benchmark", "parameters", "ns/op", "error", "min ns/op");
+	}
+
+	/**
+	 * Runs a benchmark and prints its result.
+	 *
+	 * @param name       Name of the benchmark, such as HashTableSC.put
+	 * @param params     Values of its parameters, such as size=1000
+	 * @param operations Amount of operations done by one call of the body
+	 * @param setup      Creates the state for one call of the body, not timed
+	 * @param body       The timed work, whose result is kept
+	 */
+	public <S> void run(String name, String params, long operations, Supplier<S> setup, Function<S, ?> body) {
+		if (filter != null && !filter.matcher(name + " " + params).find())
+			return;
+		for (int i = 0; i < warmupIterations; i++)
+			iteration(operations, setup, body);
+		double[] nanos = new double[iterations];
+		for (int i = 0; i < iterations; i++)
+			nanos[i] = iteration(operations, setup, body);
+
+		double mean = 0, min = Double.MAX_VALUE;
+		for (double n : nanos) {
+			mean += n / iterations;
+			min = Math.min(min, n);
+		}
+		double variance = 0;
+		for (double n : nanos)
+			variance += (n - mean) * (n - mean) / Math.max(iterations - 1, 1);
+		double error = Math.sqrt(variance);
+		System.out.printf("%-32s %-24s %14.2f %12s %14.2f%n", name, params, mean, "+- " + format(error), min);
+		if (csv != null)
+			append(name, params, mean, error, min);
+	}
+
+	/* Return the nanoseconds per operation of one iteration */
+	private static <S> double iteration(long operations, Supplier<S> setup, Function<S, ?> body) {
+		long elapsed = 0, calls = 0;
+		do {
+			S state = setup.get();
+			long start = System.nanoTime();
+			sink = body.apply(state);
+			elapsed += System.nanoTime() - start;
+			calls++;
+		} while (elapsed < ITERATION_MILLIS * 1000000L);
+		return (double) elapsed / (calls * operations);
+	}
+
+	private void append(String name, String params, double mean, double error, double min) {
+		try (PrintWriter out = new PrintWriter(new FileWriter(csv, true))) {
+			out.printf("%d,%s,\"%s\",%.2f,%.2f,%.2f%n", System.currentTimeMillis(), name, params, mean, error, min);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot write to " + csv, e);
+		}
+	}
+
+	private static String format(double value) {
+		return String.format("%.2f", value);
+	}
+
+}
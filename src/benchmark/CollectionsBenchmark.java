@@ -0,0 +1,142 @@
+package benchmark;
+
+import java.util.Random;
+
+import list.ArrayList;
+import list.LinkedList;
+import list.List;
+import map.HashTableSC;
+import map.LinkedListMap;
+import map.Map;
+import map.RobinHoodHashMap;
+import sortedList.SortedArrayList;
+import sortedList.SortedLinkedList;
+import sortedList.SortedList;
+import utils.IntegerComparator;
+import utils.MergeSort;
+
+/**
+ * Measures the collections the pipeline is built on: HashTableSC against
+ * RobinHoodHashMap and LinkedListMap (put, get, remove), SortedArrayList
+ * against SortedLinkedList (add, removeIndex), and MergeSort.sortList on an
+ * ArrayList against a LinkedList, for several amounts of elements. The keys are visited in random
+ * order. Times are per single operation.
+ *
+ * Usage: java benchmark.CollectionsBenchmark [options of Bench]
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class CollectionsBenchmark {
+
+	private static final int[] SIZES = { 100, 1000, 10000 };
+
+	public static void main(String[] args) {
+		Bench bench = new Bench(args);
+		for (int size : SIZES) {
+			String params = "size=" + size;
+			final Integer[] keys = shuffled(size, new Random(size));
+
+			mapBenchmarks(bench, "HashTableSC", params, keys,
+					() -> new HashTableSC<Integer, Integer>(key -> key.hashCode() & 0x7FFFFFFF));
+			mapBenchmarks(bench, "RobinHoodHashMap", params, keys,
+					() -> new RobinHoodHashMap<Integer, Integer>(key -> key.hashCode() & 0x7FFFFFFF));
+			mapBenchmarks(bench, "LinkedListMap", params, keys, () -> new LinkedListMap<Integer, Integer>(value -> value));
+
+			sortedListBenchmarks(bench, "SortedArrayList", params, keys,
+					() -> new SortedArrayList<Integer>(keys.length));
+			sortedListBenchmarks(bench, "SortedLinkedList", params, keys, () -> new SortedLinkedList<Integer>());
+
+			final MergeSort<Integer> sorter = new MergeSort<Integer>(new IntegerComparator());
+			bench.run("MergeSort.sortList(ArrayList)", params, size, () -> fill(new ArrayList<Integer>(size), keys),
+					list -> {
+						sorter.sortList(list);
+						return list;
+					});
+			bench.run("MergeSort.sortList(LinkedList)", params, size, () -> fill(new LinkedList<Integer>(), keys),
+					list -> {
+						sorter.sortList(list);
+						return list;
+					});
+		}
+	}
+
+	private interface MapFactory {
+		Map<Integer, Integer> create();
+	}
+
+	private interface SortedListFactory {
+		SortedList<Integer> create();
+	}
+
+	private static void mapBenchmarks(Bench bench, String name, String params, Integer[] keys, MapFactory factory) {
+		bench.run(name + ".put", params, keys.length, factory::create, map -> {
+			for (Integer key : keys)
+				map.put(key, key);
+			return map;
+		});
+		bench.run(name + ".get", params, keys.length, () -> fill(factory.create(), keys), map -> {
+			long sum = 0;
+			for (Integer key : keys)
+				sum += map.get(key);
+			return sum;
+		});
+		bench.run(name + ".remove", params, keys.length, () -> fill(factory.create(), keys), map -> {
+			for (Integer key : keys)
+				map.remove(key);
+			return map;
+		});
+	}
+
+	private static void sortedListBenchmarks(Bench bench, String name, String params, Integer[] keys,
+			SortedListFactory factory) {
+		bench.run(name + ".add", params, keys.length, factory::create, list -> {
+			for (Integer key : keys)
+				list.add(key);
+			return list;
+		});
+		/* Random positions, each one valid for the size the list has by then */
+		final int[] positions = new int[keys.length];
+		Random random = new Random(keys.length);
+		for (int i = 0; i < positions.length; i++)
+			positions[i] = random.nextInt(keys.length - i);
+		bench.run(name + ".removeIndex", params, keys.length, () -> {
+			SortedList<Integer> list = factory.create();
+			for (Integer key : keys)
+				list.add(key);
+			return list;
+		}, list -> {
+			long sum = 0;
+			for (int position : positions)
+				sum += list.removeIndex(position);
+			return sum;
+		});
+	}
+
+	private static Map<Integer, Integer> fill(Map<Integer, Integer> map, Integer[] keys) {
+		for (Integer key : keys)
+			map.put(key, key);
+		return map;
+	}
+
+	private static List<Integer> fill(List<Integer> list, Integer[] keys) {
+		for (Integer key : keys)
+			list.add(key);
+		return list;
+	}
+
+	/* The numbers 0 to size - 1, boxed beforehand so boxing is not measured */
+	private static Integer[] shuffled(int size, Random random) {
+		Integer[] keys = new Integer[size];
+		for (int i = 0; i < size; i++)
+			keys[i] = i;
+		for (int i = size - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			Integer swap = keys[i];
+			keys[i] = keys[j];
+			keys[j] = swap;
+		}
+		return keys;
+	}
+
+}
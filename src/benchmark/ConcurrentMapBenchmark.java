@@ -0,0 +1,119 @@
+package benchmark;
+
+import java.util.concurrent.CountDownLatch;
+
+import map.ConcurrentHashTable;
+import map.HashTableSC;
+import map.Map;
+import map.SynchronizedMap;
+
+/**
+ * Measures how maps shared by several threads scale: ConcurrentHashTable
+ * against a HashTableSC behind a single lock (SynchronizedMap), with 1 to 8
+ * threads hammering the same map. Two workloads are run:
+ *
+ * <pre>
+ * read    90% get and 10% put of random keys of a filled map
+ * count   merge(key, 1, Integer::sum) of random keys, as when counting
+ *         frequencies in parallel; the counts are checked afterwards
+ * </pre>
+ *
+ * The result is the throughput of all the threads together, the best of a
+ * few rounds. Only a machine with as many cores as threads shows the scaling.
+ *
+ * Usage: java benchmark.ConcurrentMapBenchmark [operations per thread]
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class ConcurrentMapBenchmark {
+
+	private static final int[] THREADS = { 1, 2, 4, 8 };
+	private static final int KEYS = 1 << 16;
+	private static final int ROUNDS = 3;
+	private static final int DEFAULT_OPERATIONS = 1000000;
+
+	private interface MapFactory {
+		Map<Integer, Integer> create();
+	}
+
+	/* One operation of a workload on a key, with a random number to choose what */
+	private interface Operation {
+		void apply(Map<Integer, Integer> map, Integer key, int random);
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int operations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_OPERATIONS;
+		Integer[] keys = new Integer[KEYS];
+		for (int i = 0; i < KEYS; i++)
+			keys[i] = i;
+
+		MapFactory concurrent = () -> new ConcurrentHashTable<Integer, Integer>(KEYS, key -> key.hashCode());
+		MapFactory synchronizedMap = () -> new SynchronizedMap<Integer, Integer>(
+				new HashTableSC<Integer, Integer>(KEYS, key -> key.hashCode()));
+		Operation read = (map, key, random) -> {
+			if (random % 10 == 0)
+				map.put(key, random);
+			else
+				map.get(key);
+		};
+		Operation count = (map, key, random) -> map.merge(key, 1, Integer::sum);
+
+		System.out.printf("%-24s %-8s %8s %14s%n", "map", "workload", "threads", "Mops/s");
+		for (int threads : THREADS) {
+			run("ConcurrentHashTable", "read", concurrent, read, true, keys, threads, operations);
+			run("SynchronizedMap", "read", synchronizedMap, read, true, keys, threads, operations);
+			run("ConcurrentHashTable", "count", concurrent, count, false, keys, threads, operations);
+			run("SynchronizedMap", "count", synchronizedMap, count, false, keys, threads, operations);
+		}
+	}
+
+	private static void run(String name, String workload, MapFactory factory, Operation operation, boolean fill,
+			Integer[] keys, int threads, int operations) throws InterruptedException {
+		double best = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			final Map<Integer, Integer> map = factory.create();
+			if (fill)
+				for (Integer key : keys)
+					map.put(key, key);
+			final CountDownLatch start = new CountDownLatch(1);
+			Thread[] workers = new Thread[threads];
+			for (int t = 0; t < threads; t++) {
+				final int seed = t * 0x9E3779B9 + round + 1;
+				workers[t] = new Thread(() -> {
+					int random = seed;
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < operations; i++) {
+						/* xorshift, so the threads share no random generator */
+						random ^= random << 13;
+						random ^= random >>> 17;
+						random ^= random << 5;
+						operation.apply(map, keys[random & (KEYS - 1)], random >>> 1);
+					}
+				});
+				workers[t].start();
+			}
+			long begin = System.nanoTime();
+			start.countDown();
+			for (Thread worker : workers)
+				worker.join();
+			long nanos = System.nanoTime() - begin;
+			best = Math.max(best, (double) threads * operations * 1e3 / nanos);
+
+			if (!fill) {
+				long total = 0;
+				for (Integer count : map.getValues())
+					total += count;
+				if (total != (long) threads * operations)
+					throw new IllegalStateException(name + " lost updates: " + total);
+			}
+			Bench.sink = map;
+		}
+		System.out.printf("%-24s %-8s %8d %14.2f%n", name, workload, threads, best);
+	}
+
+}
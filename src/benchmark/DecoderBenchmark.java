@@ -0,0 +1,156 @@
+package benchmark;
+
+import java.util.Random;
+
+import map.Map;
+import utils.BTNode;
+import utils.BitReader;
+import utils.BitWriter;
+import utils.CanonicalDecoder;
+import utils.CodeTable;
+import utils.HuffManTree;
+import utils.HuffmanDecoder;
+
+/**
+ * Checks that decoding gives back exactly what was encoded, and measures how
+ * fast the table driven HuffmanDecoder is compared to walking the tree one bit
+ * at a time, and to the CanonicalDecoder on a canonical code of the same
+ * lengths. The round trips are verified over every file in inputData and over
+ * generated inputs with a skewed distribution.
+ *
+ * Usage: java benchmark.DecoderBenchmark [characters] [alphabet size]
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class DecoderBenchmark {
+
+	private static final String[] INPUT_FILES = { "stringData.txt", "stringData1.txt", "stringData2.txt",
+			"stringData5.txt", "stringData6.txt" };
+	private static final int ITERATIONS = 10;
+
+	public static void main(String[] args) {
+		int length = args.length > 0 ? Integer.parseInt(args[0]) : 4000000;
+		int alphabet = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+		for (String file : INPUT_FILES)
+			roundTrip(file, HuffManTree.load_data(file));
+		roundTrip("generated", generate(length, alphabet, new Random(42)));
+
+		String data = generate(length, alphabet, new Random(7));
+		BTNode<Long, String> tree = HuffManTree.huffman_tree(HuffManTree.compute_distribution(data));
+		Map<String, String> code = HuffManTree.huffman_code(tree);
+		byte[] encoded = HuffManTree.encode(code, data).toByteArray();
+		int symbols = data.codePointCount(0, data.length());
+
+		System.out.println("Decoding " + symbols + " symbols of an alphabet of " + alphabet + ", "
+				+ encoded.length + " encoded bytes");
+		for (int bits = 4; bits <= 12; bits += 4) {
+			HuffmanDecoder decoder = new HuffmanDecoder(CodeTable.fromMap(code), bits);
+			long best = Long.MAX_VALUE;
+			for (int i = 0; i < ITERATIONS; i++) {
+				long start = System.nanoTime();
+				String decoded = decoder.decodeText(new BitReader(encoded), symbols);
+				best = Math.min(best, System.nanoTime() - start);
+				check(decoded.equals(data), "table decoder (" + bits + " bits)");
+			}
+			report("table, " + bits + " bits/lookup (" + decoder.getTableSize() + " entries)", symbols, best);
+		}
+
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < ITERATIONS; i++) {
+			long start = System.nanoTime();
+			String decoded = walkTree(tree, new BitReader(encoded), symbols);
+			best = Math.min(best, System.nanoTime() - start);
+			check(decoded.equals(data), "tree walk");
+		}
+		report("tree walk, 1 bit/step", symbols, best);
+
+		/* The same lengths as a canonical code, the one HuffFile stores */
+		CodeTable canonical = HuffManTree.huffman_code_canonical(tree);
+		BitWriter canonicalBits = new BitWriter();
+		HuffManTree.encode(canonical, data, canonicalBits);
+		byte[] canonicalEncoded = canonicalBits.toByteArray();
+		HuffmanDecoder tableDecoder = new HuffmanDecoder(canonical);
+		best = Long.MAX_VALUE;
+		for (int i = 0; i < ITERATIONS; i++) {
+			long start = System.nanoTime();
+			String decoded = tableDecoder.decodeText(new BitReader(canonicalEncoded), symbols);
+			best = Math.min(best, System.nanoTime() - start);
+			check(decoded.equals(data), "table decoder (canonical code)");
+		}
+		report("table, canonical code", symbols, best);
+
+		CanonicalDecoder canonicalDecoder = new CanonicalDecoder(canonical);
+		best = Long.MAX_VALUE;
+		for (int i = 0; i < ITERATIONS; i++) {
+			long start = System.nanoTime();
+			String decoded = canonicalDecoder.decodeText(new BitReader(canonicalEncoded), symbols);
+			best = Math.min(best, System.nanoTime() - start);
+			check(decoded.equals(data), "canonical decoder");
+		}
+		report("canonical, " + CanonicalDecoder.FAST_BITS + " bits + first code/length", symbols, best);
+	}
+
+	private static void roundTrip(String name, String data) {
+		if (data == null || data.isEmpty())
+			return;
+		Map<String, String> code = HuffManTree.huffman_code(HuffManTree.huffman_tree(HuffManTree.compute_fd(data)));
+		BitWriter encoded = HuffManTree.encode(code, data);
+		String decoded = HuffManTree.decode(code, encoded.toByteArray(), data.codePointCount(0, data.length()));
+		check(decoded.equals(data), "round trip of " + name);
+
+		CodeTable canonical = HuffManTree.huffman_code_canonical(HuffManTree.huffman_tree(HuffManTree.compute_fd(data)));
+		BitWriter canonicalBits = new BitWriter();
+		HuffManTree.encode(canonical, data, canonicalBits);
+		decoded = new CanonicalDecoder(canonical).decodeText(new BitReader(canonicalBits.toByteArray()),
+				data.codePointCount(0, data.length()));
+		check(decoded.equals(data), "canonical round trip of " + name);
+		System.out.println("Round trip of " + name + " OK (" + encoded.bitLength() + " bits, canonical "
+				+ canonicalBits.bitLength() + " bits)");
+	}
+
+	/* The decoder we would have without tables: one child per bit */
+	private static String walkTree(BTNode<Long, String> root, BitReader in, int symbols) {
+		StringBuilder result = new StringBuilder(symbols);
+		for (int i = 0; i < symbols; i++) {
+			BTNode<Long, String> N = root;
+			while (N.getLeftChild() != null)
+				N = in.readBit() == 0 ? N.getLeftChild() : N.getRightChild();
+			result.append(N.getValue());
+		}
+		return result.toString();
+	}
+
+	/* Characters drawn from a Zipf distribution, like the letters of real text */
+	static String generate(int length, int alphabet, Random random) {
+		double[] cumulative = new double[alphabet];
+		double sum = 0;
+		for (int i = 0; i < alphabet; i++)
+			cumulative[i] = sum += 1.0 / (i + 1);
+		StringBuilder result = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			double r = random.nextDouble() * sum;
+			int first = 0, last = alphabet - 1;
+			while (first < last) {
+				int mid = (first + last) / 2;
+				if (cumulative[mid] < r)
+					first = mid + 1;
+				else
+					last = mid;
+			}
+			result.append((char) ('!' + first));
+		}
+		return result.toString();
+	}
+
+	static void check(boolean condition, String what) {
+		if (!condition)
+			throw new IllegalStateException("Mismatch in " + what);
+	}
+
+	static void report(String what, long symbols, long nanos) {
+		System.out.printf("%-45s %10.2f Msymbols/s%n", what, symbols * 1000.0 / nanos);
+	}
+
+}
@@ -0,0 +1,68 @@
+package benchmark;
+
+import java.util.Arrays;
+
+import map.HashTableSC;
+import map.Map;
+import map.RobinHoodHashMap;
+
+/**
+ * Measures the latency of every single put while a map grows from empty to
+ * millions of entries, and prints its percentiles. The average time per put,
+ * which is what Bench reports, hides the puts that grow the table; the
+ * highest percentiles show them. HashTableSC grows incrementally, so its p99
+ * and maximum should stay flat, while RobinHoodHashMap moves every entry at
+ * once on the put that fills it.
+ *
+ * Usage: java benchmark.MapLatencyBenchmark [amount of puts, default 2000000]
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class MapLatencyBenchmark {
+
+	private static final int DEFAULT_PUTS = 2000000;
+	private static final int ROUNDS = 3; // the first ones warm up the JIT
+
+	private interface MapFactory {
+		Map<Integer, Integer> create();
+	}
+
+	public static void main(String[] args) {
+		int puts = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PUTS;
+		Integer[] keys = new Integer[puts];
+		for (int i = 0; i < puts; i++)
+			keys[i] = i * 0x9E3779B1; // distinct, spread over all the ints
+		long[] nanos = new long[puts];
+
+		System.out.printf("%-20s %10s %10s %10s %10s %12s%n", "map", "p50 ns", "p99 ns", "p99.9 ns", "max ns",
+				"total ms");
+		measure("HashTableSC", () -> new HashTableSC<Integer, Integer>(key -> key.hashCode() & 0x7FFFFFFF), keys,
+				nanos);
+		measure("RobinHoodHashMap",
+				() -> new RobinHoodHashMap<Integer, Integer>(key -> key.hashCode() & 0x7FFFFFFF), keys, nanos);
+	}
+
+	private static void measure(String name, MapFactory factory, Integer[] keys, long[] nanos) {
+		long total = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			Map<Integer, Integer> map = factory.create();
+			total = 0;
+			for (int i = 0; i < keys.length; i++) {
+				long start = System.nanoTime();
+				map.put(keys[i], keys[i]);
+				nanos[i] = System.nanoTime() - start;
+				total += nanos[i];
+			}
+			Bench.sink = map;
+		}
+		Arrays.sort(nanos);
+		System.out.printf("%-20s %10d %10d %10d %10d %12.1f%n", name, percentile(nanos, 0.5), percentile(nanos, 0.99),
+				percentile(nanos, 0.999), nanos[nanos.length - 1], total / 1e6);
+	}
+
+	private static long percentile(long[] sorted, double p) {
+		return sorted[Math.min((int) (p * sorted.length), sorted.length - 1)];
+	}
+
+}
@@ -0,0 +1,46 @@
+package benchmark;
+
+import java.util.Random;
+
+import map.Map;
+import utils.BTNode;
+import utils.HuffManTree;
+
+/**
+ * Measures each stage of the original pipeline on its own: compute_fd,
+ * huffman_tree, huffman_code and encode, for generated inputs of several
+ * lengths and alphabet sizes. The input of every stage is prepared beforehand
+ * by the stages before it, so only the stage itself is timed. compute_fd and
+ * encode are reported per character, huffman_tree and huffman_code per symbol
+ * of the alphabet.
+ *
+ * Usage: java benchmark.PipelineBenchmark [options of Bench]
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class PipelineBenchmark {
+
+	private static final int[] LENGTHS = { 10000, 1000000 };
+	private static final int[] ALPHABETS = { 16, 256, 4096 };
+
+	public static void main(String[] args) {
+		Bench bench = new Bench(args);
+		for (int length : LENGTHS) {
+			for (int alphabet : ALPHABETS) {
+				String params = "length=" + length + ",alphabet=" + alphabet;
+				final String data = DecoderBenchmark.generate(length, alphabet, new Random(42));
+				final Map<String, Integer> fd = HuffManTree.compute_fd(data);
+				final BTNode<Integer, String> tree = HuffManTree.huffman_tree(fd);
+				final Map<String, String> code = HuffManTree.huffman_code(tree);
+
+				bench.run("compute_fd", params, length, () -> data, HuffManTree::compute_fd);
+				bench.run("huffman_tree", params, fd.size(), () -> fd, HuffManTree::huffman_tree);
+				bench.run("huffman_code", params, fd.size(), () -> tree, HuffManTree::huffman_code);
+				bench.run("huffman_code_table", params, fd.size(), () -> tree, HuffManTree::huffman_code_table);
+				bench.run("encode", params, length, () -> data, input -> HuffManTree.encode(code, input));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+package benchmark;
+
+import java.util.Random;
+
+import list.ArrayList;
+import list.List;
+import sortedList.SortedArrayList;
+import sortedList.SortedList;
+import utils.BTNode;
+import utils.FrequencyDistribution;
+import utils.FrequencyTable;
+import utils.HuffManTree;
+
+/**
+ * Compares the ways of building the Huffman tree for alphabets of 10^2 to 10^6
+ * symbols: the original SortedArrayList version, the binary heap used by
+ * huffman_tree, and the two queue huffman_tree_sorted (whose time is reported
+ * with and without sorting the leaves first). Every tree is checked to have
+ * the same, optimal, weighted path length.
+ *
+ * The SortedArrayList version is O(n^2), so it only runs up to the alphabet
+ * size given as argument.
+ *
+ * Usage: java benchmark.TreeBenchmark [largest alphabet for SortedArrayList]
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class TreeBenchmark {
+
+	public static void main(String[] args) {
+		int sortedListLimit = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		Random random = new Random(42);
+
+		System.out.printf("%10s %16s %12s %12s %16s%n", "alphabet", "SortedArrayList", "heap", "two queues",
+				"sort + 2 queues");
+		for (int n = 100; n <= 1000000; n *= 10) {
+			FrequencyTable table = new FrequencyTable(1);
+			for (int i = 0; i < n; i++)
+				table.add(i, 1 + (long) (1000000 / (1 + random.nextInt(n)))); // Zipf like
+			FrequencyDistribution fd = table.toDistribution();
+
+			long start = System.nanoTime();
+			BTNode<Long, String> tree = HuffManTree.huffman_tree(fd);
+			String heapTime = millis(System.nanoTime() - start);
+			long cost = check(tree, fd);
+
+			String sortedListTime = "skipped";
+			if (n <= sortedListLimit) {
+				start = System.nanoTime();
+				tree = sortedListTree(fd);
+				sortedListTime = millis(System.nanoTime() - start);
+				if (check(tree, fd) != cost)
+					throw new IllegalStateException("The SortedArrayList tree is not optimal");
+			}
+
+			start = System.nanoTime();
+			List<BTNode<Long, String>> leaves = HuffManTree.sorted_leaves(fd);
+			long sorted = System.nanoTime();
+			tree = HuffManTree.huffman_tree_sorted(leaves);
+			long end = System.nanoTime();
+			if (check(tree, fd) != cost)
+				throw new IllegalStateException("The two queue tree is not optimal");
+
+			System.out.printf("%10d %16s %12s %12s %16s%n", n, sortedListTime, heapTime, millis(end - sorted),
+					millis(end - start));
+		}
+	}
+
+	/* huffman_tree as it was before the heap, for comparison */
+	private static BTNode<Long, String> sortedListTree(FrequencyDistribution fd) {
+		SortedList<BTNode<Long, String>> sL = new SortedArrayList<BTNode<Long, String>>(fd.size());
+		for (int i = 0; i < fd.size(); i++)
+			sL.add(new BTNode<Long, String>(fd.getFrequency(i), fd.getSymbolText(i)));
+		for (int i = sL.size() - 1; i >= 1; i--) {
+			BTNode<Long, String> l = sL.removeIndex(0);
+			BTNode<Long, String> r = sL.removeIndex(0);
+			BTNode<Long, String> dad = new BTNode<Long, String>(l.getKey() + r.getKey(), l.getValue() + r.getValue());
+			dad.setLeftChild(l);
+			dad.setRightChild(r);
+			sL.add(dad);
+		}
+		return sL.removeIndex(0);
+	}
+
+	/* Returns the weighted path length, which is the same for every optimal tree */
+	private static long check(BTNode<Long, String> root, FrequencyDistribution fd) {
+		if (root.getKey() != fd.total())
+			throw new IllegalStateException("The tree lost some frequencies");
+		/* The weighted path length is the sum of the frequencies of the parents */
+		long cost = 0;
+		List<BTNode<Long, String>> pending = new ArrayList<BTNode<Long, String>>();
+		pending.add(root);
+		while (!pending.isEmpty()) {
+			BTNode<Long, String> N = pending.last();
+			pending.remove(pending.size() - 1);
+			if (N.getLeftChild() != null) {
+				cost += N.getKey();
+				pending.add(N.getLeftChild());
+				pending.add(N.getRightChild());
+			}
+		}
+		return cost;
+	}
+
+	private static String millis(long nanos) {
+		return String.format("%.2f ms", nanos / 1e6);
+	}
+
+}
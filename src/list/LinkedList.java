@@ -48,9 +48,12 @@ public class LinkedList<E> implements List<E> {
 	private class ListIterator implements Iterator<E> {
 
 		private Node nextNode;
+		private Node lastNode; // returned by next, null if removed or next not called yet
+		private Node prevNode; // the one before lastNode
 
 		public ListIterator() {
 			nextNode = header.getNext();
+			prevNode = header;
 		}
 
 		@Override
@@ -61,6 +64,9 @@ public class LinkedList<E> implements List<E> {
 		@Override
 		public E next() {
 			if (hasNext()) {
+				if (lastNode != null)
+					prevNode = lastNode;
+				lastNode = nextNode;
 				E val = nextNode.getValue();
 				nextNode = nextNode.getNext();
 				return val;
@@ -68,6 +74,18 @@ public class LinkedList<E> implements List<E> {
 				throw new NoSuchElementException();
 		}
 
+		/* Removes the element returned by next without walking the list again */
+		@Override
+		public void remove() {
+			if (lastNode == null)
+				throw new IllegalStateException();
+			// If we have A -> B -> C and want to remove B, make A point to C
+			prevNode.setNext(nextNode);
+			lastNode.clear();
+			lastNode = null;
+			currentSize--;
+		}
+
 	} // End of ListIterator class
 
 	// private fields
@@ -0,0 +1,368 @@
+package map;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
+
+import list.ArrayList;
+import list.List;
+
+/**
+ * A hash table that many threads can use at once. The table is split into
+ * segments, each one a small chained hash table with a lock of its own, and
+ * the high bits of the hash of a key pick its segment. Threads that write keys
+ * of different segments never wait for each other, and a segment grows on its
+ * own, locking only itself.
+ *
+ * get never locks: the buckets are read as volatiles, the link to the next
+ * node of a chain never changes once a node is published, and a remove copies
+ * the nodes in front of the removed one instead of unlinking it. A reader
+ * therefore always walks a complete chain, which is either the one before or
+ * the one after a concurrent write. getKeys, getValues and size are weakly
+ * consistent: they reflect every write that finished before they started,
+ * and maybe some that happen meanwhile.
+ *
+ * putIfAbsent, merge and compute update a key atomically, holding the lock of
+ * its segment while the given function runs; the function must therefore be
+ * short and must not use this table.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class ConcurrentHashTable<K, V> implements Map<K, V> {
+
+	/* Segments, so writers rarely share a lock even with many threads */
+	public static final int DEFAULT_CONCURRENCY = 16;
+
+	private final static double loadFactor = 0.75;
+	private static final int DEFAULT_SIZE = 16;
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+	private static class Node<K, V> {
+		private final K key;
+		private final int hash;
+		private volatile V value;
+		private final Node<K, V> next;
+
+		public Node(K key, int hash, V value, Node<K, V> next) {
+			this.key = key;
+			this.hash = hash;
+			this.value = value;
+			this.next = next;
+		}
+	}
+
+	/* A chained hash table whose writers hold its monitor */
+	private static class Segment<K, V> {
+		private volatile AtomicReferenceArray<Node<K, V>> table;
+		private volatile int count;
+		private int threshold;
+
+		public Segment(int capacity) {
+			setTable(new AtomicReferenceArray<Node<K, V>>(capacity));
+		}
+
+		private void setTable(AtomicReferenceArray<Node<K, V>> table) {
+			threshold = (int) (table.length() * loadFactor);
+			this.table = table;
+		}
+	}
+
+	// private fields
+	private Segment<K, V>[] segments;
+	private int segmentShift;
+	private HashFunction<K> hashFunction;
+
+	public ConcurrentHashTable(HashFunction<K> hashFunction) {
+		this(DEFAULT_SIZE * DEFAULT_CONCURRENCY, DEFAULT_CONCURRENCY, hashFunction);
+	}
+
+	public ConcurrentHashTable(int initialCapacity, HashFunction<K> hashFunction) {
+		this(initialCapacity, DEFAULT_CONCURRENCY, hashFunction);
+	}
+
+	/**
+	 * @param initialCapacity Entries the table holds before any segment grows
+	 * @param concurrency     Threads expected to write at once; the amount of
+	 *                        segments is this rounded up to a power of two
+	 * @param hashFunction    Hashes the keys
+	 */
+	public ConcurrentHashTable(int initialCapacity, int concurrency, HashFunction<K> hashFunction) {
+		if (initialCapacity < 1)
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		if (concurrency < 1)
+			throw new IllegalArgumentException("Concurrency must be at least 1");
+		if (hashFunction == null)
+			throw new IllegalArgumentException("Hash function cannot be null");
+
+		this.hashFunction = hashFunction;
+		int bits = 0;
+		while (1 << bits < concurrency && bits < 16)
+			bits++;
+		segmentShift = 32 - bits;
+		segments = newSegments(1 << bits);
+		int capacity = 2;
+		while (capacity * segments.length * loadFactor < initialCapacity && capacity < MAXIMUM_CAPACITY)
+			capacity <<= 1;
+		for (int i = 0; i < segments.length; i++)
+			segments[i] = new Segment<K, V>(capacity);
+	}
+
+	@Override
+	public V get(K key) {
+		if (key == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+
+		int hash = hash(key);
+		Node<K, V> node = find(segment(hash).table, key, hash);
+		return node == null ? null : node.value;
+	}
+
+	@Override
+	public void put(K key, V value) {
+		if (key == null || value == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+
+		int hash = hash(key);
+		Segment<K, V> segment = segment(hash);
+		synchronized (segment) {
+			Node<K, V> node = find(segment.table, key, hash);
+			if (node != null)
+				node.value = value;
+			else
+				insert(segment, key, hash, value);
+		}
+	}
+
+	@Override
+	public V remove(K key) {
+		if (key == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+
+		int hash = hash(key);
+		Segment<K, V> segment = segment(hash);
+		synchronized (segment) {
+			Node<K, V> node = find(segment.table, key, hash);
+			if (node == null)
+				return null;
+			delete(segment, node);
+			return node.value;
+		}
+	}
+
+	/**
+	 * Adds a key only if it is not in the table yet, atomically.
+	 *
+	 * @param key   The key to add
+	 * @param value Its value
+	 * @return The value the key already had, or null if it was added
+	 */
+	@Override
+	public V putIfAbsent(K key, V value) {
+		if (key == null || value == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+
+		int hash = hash(key);
+		Segment<K, V> segment = segment(hash);
+		synchronized (segment) {
+			Node<K, V> node = find(segment.table, key, hash);
+			if (node != null)
+				return node.value;
+			insert(segment, key, hash, value);
+			return null;
+		}
+	}
+
+	/**
+	 * Combines a value with the one a key has, atomically: the key gets the value
+	 * if it is not in the table, or the result of the function otherwise, and is
+	 * removed if that result is null. Counting a key is merge(key, 1, Integer::sum).
+	 *
+	 * @param key       The key to update
+	 * @param value     The value to add or combine
+	 * @param remapping Combines the old value with the given one
+	 * @return The new value of the key, or null if it was removed
+	 */
+	@Override
+	public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+		if (key == null || value == null || remapping == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+
+		int hash = hash(key);
+		Segment<K, V> segment = segment(hash);
+		synchronized (segment) {
+			Node<K, V> node = find(segment.table, key, hash);
+			if (node == null) {
+				insert(segment, key, hash, value);
+				return value;
+			}
+			V result = remapping.apply(node.value, value);
+			if (result == null)
+				delete(segment, node);
+			else
+				node.value = result;
+			return result;
+		}
+	}
+
+	/**
+	 * Replaces the value of a key by a function of it, atomically. The key is
+	 * removed if the result is null.
+	 *
+	 * @param key       The key to update
+	 * @param remapping Computes the new value from the key and its old value,
+	 *                  which is null if the key is not in the table
+	 * @return The new value of the key, or null if it is not in the table
+	 */
+	@Override
+	public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+		if (key == null || remapping == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+
+		int hash = hash(key);
+		Segment<K, V> segment = segment(hash);
+		synchronized (segment) {
+			Node<K, V> node = find(segment.table, key, hash);
+			V result = remapping.apply(key, node == null ? null : node.value);
+			if (result == null) {
+				if (node != null)
+					delete(segment, node);
+			} else if (node != null)
+				node.value = result;
+			else
+				insert(segment, key, hash, result);
+			return result;
+		}
+	}
+
+	@Override
+	public boolean containsKey(K key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public List<K> getKeys() {
+		List<K> result = new ArrayList<K>(Math.max(size(), 1));
+		for (Segment<K, V> segment : segments) {
+			AtomicReferenceArray<Node<K, V>> table = segment.table;
+			for (int i = 0; i < table.length(); i++)
+				for (Node<K, V> node = table.get(i); node != null; node = node.next)
+					result.add(node.key);
+		}
+		return result;
+	}
+
+	@Override
+	public List<V> getValues() {
+		List<V> result = new ArrayList<V>(Math.max(size(), 1));
+		for (Segment<K, V> segment : segments) {
+			AtomicReferenceArray<Node<K, V>> table = segment.table;
+			for (int i = 0; i < table.length(); i++)
+				for (Node<K, V> node = table.get(i); node != null; node = node.next)
+					result.add(node.value);
+		}
+		return result;
+	}
+
+	@Override
+	public int size() {
+		long size = 0;
+		for (Segment<K, V> segment : segments)
+			size += segment.count;
+		return (int) Math.min(size, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		for (Segment<K, V> segment : segments)
+			if (segment.count != 0)
+				return false;
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		for (Segment<K, V> segment : segments)
+			synchronized (segment) {
+				segment.setTable(new AtomicReferenceArray<Node<K, V>>(segment.table.length()));
+				segment.count = 0;
+			}
+	}
+
+	@Override
+	public void print(PrintStream out) {
+		for (Segment<K, V> segment : segments) {
+			AtomicReferenceArray<Node<K, V>> table = segment.table;
+			for (int i = 0; i < table.length(); i++)
+				for (Node<K, V> node = table.get(i); node != null; node = node.next)
+					out.printf("(%s, %s)\n", node.key, node.value);
+		}
+	}
+
+	/*
+	 * An array of a generic type cannot be created, so an array of unknown
+	 * segments is cast, which is safe since only segments of this table are
+	 * stored in it
+	 */
+	@SuppressWarnings("unchecked")
+	private static <K, V> Segment<K, V>[] newSegments(int count) {
+		return (Segment<K, V>[]) new Segment<?, ?>[count];
+	}
+
+	/* Mixed, so the high bits that pick the segment and the low ones that pick the bucket both vary */
+	private int hash(K key) {
+		return MurmurHashFunction.fmix(hashFunction.hashCode(key));
+	}
+
+	private Segment<K, V> segment(int hash) {
+		return segments[(hash >>> segmentShift) & (segments.length - 1)];
+	}
+
+	private static <K, V> Node<K, V> find(AtomicReferenceArray<Node<K, V>> table, K key, int hash) {
+		for (Node<K, V> node = table.get(hash & (table.length() - 1)); node != null; node = node.next)
+			if (node.hash == hash && node.key.equals(key))
+				return node;
+		return null;
+	}
+
+	/* Adds a key that is not in the segment; the caller holds its lock */
+	private static <K, V> void insert(Segment<K, V> segment, K key, int hash, V value) {
+		if (segment.count + 1 > segment.threshold && segment.table.length() < MAXIMUM_CAPACITY)
+			rehash(segment);
+		AtomicReferenceArray<Node<K, V>> table = segment.table;
+		int bucket = hash & (table.length() - 1);
+		table.set(bucket, new Node<K, V>(key, hash, value, table.get(bucket)));
+		segment.count++;
+	}
+
+	/*
+	 * Unlinks a node by copying the ones in front of it, so a reader walking the
+	 * old chain still sees every node; the caller holds the lock
+	 */
+	private static <K, V> void delete(Segment<K, V> segment, Node<K, V> node) {
+		AtomicReferenceArray<Node<K, V>> table = segment.table;
+		int bucket = node.hash & (table.length() - 1);
+		Node<K, V> first = node.next;
+		for (Node<K, V> p = table.get(bucket); p != node; p = p.next)
+			first = new Node<K, V>(p.key, p.hash, p.value, first);
+		table.set(bucket, first);
+		segment.count--;
+	}
+
+	/*
+	 * Doubles the buckets of a segment. The nodes are copied into a new table,
+	 * which is published once complete, so readers keep using the old one
+	 * meanwhile
+	 */
+	private static <K, V> void rehash(Segment<K, V> segment) {
+		AtomicReferenceArray<Node<K, V>> old = segment.table;
+		AtomicReferenceArray<Node<K, V>> table = new AtomicReferenceArray<Node<K, V>>(old.length() * 2);
+		for (int i = 0; i < old.length(); i++)
+			for (Node<K, V> node = old.get(i); node != null; node = node.next) {
+				int bucket = node.hash & (table.length() - 1);
+				table.set(bucket, new Node<K, V>(node.key, node.hash, node.value, table.get(bucket)));
+			}
+		segment.setTable(table);
+	}
+
+}
@@ -0,0 +1,174 @@
+package map;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import list.List;
+
+/**
+ * Measures how well a hash function spreads a set of keys over the buckets of
+ * a table, picking the bucket of every hash the same way HashTableSC does. It
+ * reports how many keys have exactly the same hash, how many buckets are left
+ * empty, the longest chain, and the average amount of nodes a successful
+ * lookup has to visit, next to what a perfectly random hash would give.
+ *
+ * Usage: java map.HashDiagnostics &lt;file&gt; [buckets]
+ *
+ * The keys are the distinct words, separated by whitespace, of the file; by
+ * default there is one bucket per key, rounded up to a power of two.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class HashDiagnostics {
+
+	/* Chains of this length or more are counted together in the histogram */
+	public static final int HISTOGRAM_SIZE = 8;
+
+	// private fields
+	private int keys;
+	private int buckets;
+	private int distinctHashes;
+	private int emptyBuckets;
+	private int longestChain;
+	private long probes; // nodes visited to find every key once
+	private int[] histogram; // buckets with each chain length
+
+	/**
+	 * Hashes every key and counts how they fall into the buckets.
+	 *
+	 * @param keys         Distinct keys
+	 * @param hashFunction The hash function to measure
+	 * @param buckets      Amount of buckets, rounded up to a power of two
+	 */
+	public <K> HashDiagnostics(List<K> keys, HashFunction<K> hashFunction, int buckets) {
+		if (keys == null || hashFunction == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		if (buckets < 1)
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		this.buckets = 1;
+		while (this.buckets < buckets && this.buckets < 1 << 30)
+			this.buckets <<= 1;
+		this.keys = keys.size();
+
+		int[] hashes = new int[this.keys];
+		int[] chains = new int[this.buckets];
+		int i = 0;
+		for (K key : keys) {
+			int h = hashFunction.hashCode(key);
+			hashes[i++] = h;
+			chains[(h ^ h >>> 16) & (this.buckets - 1)]++;
+		}
+
+		Arrays.sort(hashes);
+		for (i = 0; i < hashes.length; i++)
+			if (i == 0 || hashes[i] != hashes[i - 1])
+				distinctHashes++;
+
+		histogram = new int[HISTOGRAM_SIZE + 1];
+		for (int chain : chains) {
+			if (chain == 0)
+				emptyBuckets++;
+			longestChain = Math.max(longestChain, chain);
+			probes += (long) chain * (chain + 1) / 2;
+			histogram[Math.min(chain, HISTOGRAM_SIZE)]++;
+		}
+	}
+
+	public int getKeys() {
+		return keys;
+	}
+
+	public int getBuckets() {
+		return buckets;
+	}
+
+	/**
+	 * Return how many keys have exactly the same 32 bit hash as another key,
+	 * which no table size can separate.
+	 *
+	 * @return The amount of keys minus the amount of distinct hashes
+	 */
+	public int getHashCollisions() {
+		return keys - distinctHashes;
+	}
+
+	public int getEmptyBuckets() {
+		return emptyBuckets;
+	}
+
+	public int getLongestChain() {
+		return longestChain;
+	}
+
+	/**
+	 * Return the average amount of nodes visited to find a key that is in the
+	 * table.
+	 *
+	 * @return The average successful lookup cost, at least 1
+	 */
+	public double getAverageProbes() {
+		return keys == 0 ? 0 : (double) probes / keys;
+	}
+
+	/**
+	 * Return the average lookup cost of a perfectly random hash with the same
+	 * keys and buckets, which is 1 + (keys - 1) / (2 * buckets).
+	 *
+	 * @return The expected successful lookup cost
+	 */
+	public double getExpectedProbes() {
+		return keys == 0 ? 0 : 1 + (keys - 1) / (2.0 * buckets);
+	}
+
+	/**
+	 * Return the amount of buckets with each chain length.
+	 *
+	 * @param length A chain length; the last one counts the longer chains too
+	 * @return The buckets whose chain has that length
+	 */
+	public int getBucketsWithChain(int length) {
+		return histogram[Math.min(length, HISTOGRAM_SIZE)];
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder chains = new StringBuilder();
+		for (int length = 0; length <= HISTOGRAM_SIZE; length++)
+			chains.append(length == 0 ? "" : " ").append(histogram[length]);
+		return String.format("Keys: %d in %d buckets%n" + "Hash collisions: %d%n" + "Empty buckets: %.2f%%%n"
+				+ "Longest chain: %d%n" + "Average probes: %.3f (random hash: %.3f)%n"
+				+ "Buckets by chain length 0..%d+: %s", keys, buckets, getHashCollisions(),
+				100.0 * emptyBuckets / buckets, longestChain, getAverageProbes(), getExpectedProbes(), HISTOGRAM_SIZE,
+				chains);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2 || args.length == 2 && !args[1].matches("[1-9]\\d{0,8}")) {
+			System.err.println("Usage: java map.HashDiagnostics <file> [buckets]");
+			System.exit(2);
+		}
+		String text = new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.ISO_8859_1);
+		Map<String, Boolean> distinct = new RobinHoodHashMap<String, Boolean>(new MurmurHashFunction<String>());
+		for (String word : text.split("\\s+"))
+			if (!word.isEmpty())
+				distinct.put(word, true);
+		List<String> keys = distinct.getKeys();
+		int buckets = args.length == 2 ? Integer.parseInt(args[1]) : Math.max(keys.size(), 1);
+
+		report("SimpleHashFunction", new HashDiagnostics(keys, new SimpleHashFunction<String>(), buckets));
+		report("String.hashCode", new HashDiagnostics(keys, (String key) -> key.hashCode(), buckets));
+		report("MurmurHashFunction", new HashDiagnostics(keys, new MurmurHashFunction<String>(), buckets));
+		report("SipHashFunction (seeded)", new HashDiagnostics(keys, SipHashFunction.<String>seeded(), buckets));
+	}
+
+	private static void report(String name, HashDiagnostics diagnostics) {
+		System.out.println(name);
+		System.out.println(diagnostics);
+		System.out.println();
+	}
+
+}
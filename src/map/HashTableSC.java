@@ -1,10 +1,28 @@
 package map;
 
 import java.io.PrintStream;
+import java.util.Iterator;
+import java.util.function.BiFunction;
 
+import list.ArrayList;
 import list.LinkedList;
 import list.List;
 
+/**
+ * A hash table with separate chaining. The amount of buckets is a power of two
+ * and doubles once the table holds more than loadFactor entries per bucket.
+ *
+ * Growing is incremental, so no single operation pays for moving the whole
+ * table: while the table grows, the old buckets are kept next to the new ones,
+ * and every operation moves MIGRATE_STEP of them to the new table. A key lives
+ * in its old bucket until that bucket has been moved, and in its new one
+ * afterwards. The new table is twice as big, so the move is finished long
+ * before the new table fills up.
+ *
+ * put, remove and the upserts of Map (getOrDefault, putIfAbsent, merge and
+ * compute) walk the chain of the key only once, so counting with
+ * merge(key, 1, Integer::sum) costs a single walk per update.
+ */
 public class HashTableSC<K, V> implements Map<K, V> {
 
 	/**
@@ -15,10 +33,12 @@ public class HashTableSC<K, V> implements Map<K, V> {
 	private static class BucketNode<K, V> {
 		private K key;
 		private V value;
+		private int hash; // kept so that moving the node does not hash it again
 
-		public BucketNode(K key, V value) {
+		public BucketNode(K key, V value, int hash) {
 			this.key = key;
 			this.value = value;
+			this.hash = hash;
 		}
 
 		public K getKey() {
@@ -32,12 +52,16 @@ public class HashTableSC<K, V> implements Map<K, V> {
 
 	// private fields
 	private int currentSize;
-	private List<BucketNode<K, V>>[] buckets;
+	private List<BucketNode<K, V>>[] buckets; // a bucket is null until it gets a node
+	private List<BucketNode<K, V>>[] oldBuckets; // null unless the table is growing
+	private int migrated; // old buckets already moved to the new table
 	private HashFunction<K> hashFunction;
 	private final static double loadFactor = 0.75;
-	private static final int DEFAULT_SIZE = 11;
+	private static final int DEFAULT_SIZE = 16;
+	/* Old buckets moved per operation while growing */
+	private static final int MIGRATE_STEP = 4;
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
 
-	@SuppressWarnings("unchecked")
 	public HashTableSC(int initialCapacity, HashFunction<K> hashFunction) {
 		if (initialCapacity < 1)
 			throw new IllegalArgumentException("Capacity must be at least 1");
@@ -46,96 +70,113 @@ public class HashTableSC<K, V> implements Map<K, V> {
 
 		currentSize = 0;
 		this.hashFunction = hashFunction;
-		buckets = new LinkedList[initialCapacity];
-		for (int i = 0; i < initialCapacity; i++)
-			buckets[i] = new LinkedList<BucketNode<K, V>>();
+		int capacity = 1;
+		while (capacity < initialCapacity && capacity < MAXIMUM_CAPACITY)
+			capacity <<= 1;
+		buckets = new_table(capacity);
 
 	}
 
-	@SuppressWarnings("unchecked")
 	public HashTableSC(HashFunction<K> hashFunction) { // delegate to this constructor if no capacity is entered by user
-		if (hashFunction == null)
-			throw new IllegalArgumentException("Hash function cannot be null");
-
-		currentSize = 0;
-		this.hashFunction = hashFunction;
-		buckets = new LinkedList[DEFAULT_SIZE];
-		for (int i = 0; i < DEFAULT_SIZE; i++)
-			buckets[i] = new LinkedList<BucketNode<K, V>>();
-
+		this(DEFAULT_SIZE, hashFunction);
 	}
 
 	@Override
 	public V get(K key) {
 		if (key == null)
 			throw new IllegalArgumentException("Parameter cannot be null.");
+		migrate();
 
-		/* First we determine the bucket corresponding to this key */
-		int targetBucket = hashFunction.hashCode(key) % buckets.length;
-		/*
-		 * Within that bucket there is a linked list, since we're using Separate
-		 * Chaining
-		 */
-		List<BucketNode<K, V>> L = buckets[targetBucket];
-		/* Look for the key within the nodes of that linked list */
-		for (BucketNode<K, V> BN : L) {
-			if (BN.getKey().equals(key)) // Found it!
-				return BN.getValue();
-		}
-
-		return null; // Did not find it
+		BucketNode<K, V> BN = find(key, hash(key));
+		return BN == null ? null : BN.getValue();
 	}
 
 	@Override
 	public void put(K key, V value) {
 		if (key == null || value == null)
 			throw new IllegalArgumentException("Parameter cannot be null.");
+		migrate();
+
 		/*
-		 * Can't have two elements with same key, so remove existing element with the
-		 * given key (if any)
+		 * Can't have two elements with same key, so replace the value of the existing
+		 * element with the given key (if any)
 		 */
-		remove(key);
+		int hash = hash(key);
+		BucketNode<K, V> BN = find(key, hash);
+		if (BN != null)
+			BN.value = value;
+		else
+			add(key, value, hash);
+	}
 
-		if ((size() / buckets.length) > loadFactor) {
-			// System.out.println("REHASHING NEEDED");
-			rehash();
-		}
+	@Override
+	public V putIfAbsent(K key, V value) {
+		if (key == null || value == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		migrate();
 
-		// System.out.println("Adding Element with key: " + key);
+		int hash = hash(key);
+		BucketNode<K, V> BN = find(key, hash);
+		if (BN != null)
+			return BN.getValue();
+		add(key, value, hash);
+		return null;
+	}
 
-		/* Determine the bucket corresponding to this key */
-		int targetBucket = hashFunction.hashCode(key) % buckets.length;
-		/*
-		 * Within that bucket there is a linked list, since we're using Separate
-		 * Chaining
-		 */
-		List<BucketNode<K, V>> L = buckets[targetBucket];
-		/* Finally, add the key/value to the linked list */
-		L.add(0, new BucketNode<K, V>(key, value));
-		currentSize++;
+	@Override
+	public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+		if (key == null || value == null || remapping == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		migrate();
+
+		int hash = hash(key);
+		BucketNode<K, V> BN = find(key, hash);
+		if (BN == null) {
+			add(key, value, hash);
+			return value;
+		}
+		return update(BN, remapping.apply(BN.getValue(), value));
+	}
+
+	@Override
+	public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+		if (key == null || remapping == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		migrate();
+
+		int hash = hash(key);
+		BucketNode<K, V> BN = find(key, hash);
+		V result = remapping.apply(key, BN == null ? null : BN.getValue());
+		if (BN != null)
+			return update(BN, result);
+		if (result != null)
+			add(key, result, hash);
+		return result;
 	}
 
 	@Override
 	public V remove(K key) {
 		if (key == null)
 			throw new IllegalArgumentException("Parameter cannot be null.");
+		migrate();
 
-		/* First we determine the bucket corresponding to this key */
-		int targetBucket = hashFunction.hashCode(key) % buckets.length;
 		/*
-		 * Within that bucket there is a linked list, since we're using Separate
-		 * Chaining
+		 * Within the bucket of this key there is a linked list, since we're using
+		 * Separate Chaining
 		 */
-		List<BucketNode<K, V>> L = buckets[targetBucket];
+		int hash = hash(key);
+		List<BucketNode<K, V>> L = bucket(hash);
+		if (L == null)
+			return null;
 		/* Iterate over linked list trying to find this the key */
-		int pos = 0;
-		for (BucketNode<K, V> BN : L) {
-			if (BN.getKey().equals(key)) { // Found it!
-				L.remove(pos);
+		Iterator<BucketNode<K, V>> it = L.iterator();
+		while (it.hasNext()) {
+			BucketNode<K, V> BN = it.next();
+			if (BN.hash == hash && BN.getKey().equals(key)) { // Found it!
+				it.remove(); // Unlinks it right where we are
 				currentSize--;
 				return BN.getValue();
-			} else
-				pos++;
+			}
 		}
 		return null;
 	}
@@ -149,9 +190,11 @@ public class HashTableSC<K, V> implements Map<K, V> {
 	public List<K> getKeys() {
 		List<K> result = new LinkedList<K>();
 		/* For each bucket in the hash table, get the keys in that linked list */
-		for (int i = 0; i < buckets.length; i++)
-			for (BucketNode<K, V> BN : buckets[i])
-				result.add(0, BN.getKey());
+		for (List<BucketNode<K, V>>[] table : tables())
+			for (List<BucketNode<K, V>> L : table)
+				if (L != null)
+					for (BucketNode<K, V> BN : L)
+						result.add(0, BN.getKey());
 		return result;
 	}
 
@@ -159,9 +202,11 @@ public class HashTableSC<K, V> implements Map<K, V> {
 	public List<V> getValues() {
 		List<V> result = new LinkedList<V>();
 		/* For each bucket in the hash table, get the values in that linked list */
-		for (int i = 0; i < buckets.length; i++)
-			for (BucketNode<K, V> BN : buckets[i])
-				result.add(0, BN.getValue());
+		for (List<BucketNode<K, V>>[] table : tables())
+			for (List<BucketNode<K, V>> L : table)
+				if (L != null)
+					for (BucketNode<K, V> BN : L)
+						result.add(0, BN.getValue());
 		return result;
 	}
 
@@ -179,44 +224,137 @@ public class HashTableSC<K, V> implements Map<K, V> {
 	public void clear() {
 		currentSize = 0;
 		for (int i = 0; i < buckets.length; i++)
-			buckets[i].clear();
+			buckets[i] = null;
+		oldBuckets = null;
 	}
 
 	@Override
 	public void print(PrintStream out) {
 		/* For each bucket in the hash table, print the elements in that linked list */
-		for (int i = 0; i < buckets.length; i++)
-			for (BucketNode<K, V> BN : buckets[i])
-				out.printf("(%s, %s)\n", BN.getKey(), BN.getValue());
+		for (List<BucketNode<K, V>>[] table : tables())
+			for (List<BucketNode<K, V>> L : table)
+				if (L != null)
+					for (BucketNode<K, V> BN : L)
+						out.printf("(%s, %s)\n", BN.getKey(), BN.getValue());
 	}
 
 	/**
-	 * TODO Implement your own version of the rehash method for the HashTableSC
-	 * implementation
+	 * Starts growing the table: the current buckets become the old ones, and an
+	 * empty table twice as big takes their place. The nodes are moved later, a
+	 * few buckets at a time, by migrate.
 	 */
-	@SuppressWarnings("unchecked")
 	private void rehash() {
-		List<BucketNode<K, V>>[] oldMap = buckets;
-		List<BucketNode<K, V>>[] newMap = new LinkedList[size() * 2];
-		buckets = newMap;
-		for (int i = 0; i < buckets.length; i++) {
-			buckets[i] = new LinkedList<BucketNode<K, V>>();
+		oldBuckets = buckets;
+		migrated = 0;
+		buckets = new_table(buckets.length * 2);
+		migrate();
+	}
+
+	/* Moves the next MIGRATE_STEP old buckets, if the table is growing */
+	private void migrate() {
+		for (int step = 0; step < MIGRATE_STEP && oldBuckets != null; step++) {
+			List<BucketNode<K, V>> L = oldBuckets[migrated];
+			oldBuckets[migrated++] = null;
+			if (L != null)
+				for (BucketNode<K, V> BN : L)
+					new_bucket(BN.hash).add(0, BN); // The same node, no copy
+			if (migrated == oldBuckets.length)
+				oldBuckets = null;
+		}
+	}
+
+	/* The node of a key, or null if it is not in the table */
+	private BucketNode<K, V> find(K key, int hash) {
+		/*
+		 * Within the bucket of this key there is a linked list, since we're using
+		 * Separate Chaining
+		 */
+		List<BucketNode<K, V>> L = bucket(hash);
+		if (L == null)
+			return null;
+		/* Look for the key within the nodes of that linked list */
+		for (BucketNode<K, V> BN : L) {
+			if (BN.hash == hash && BN.getKey().equals(key)) // Found it!
+				return BN;
+		}
+		return null; // Did not find it
+	}
+
+	/* Adds a key that is not in the table, growing it first if it is too full */
+	private void add(K key, V value, int hash) {
+		if (size() + 1 > loadFactor * buckets.length && oldBuckets == null && buckets.length < MAXIMUM_CAPACITY) {
+			rehash();
 		}
-		for (List<BucketNode<K, V>> list : oldMap) {
-			for (BucketNode<K, V> old : list) {
-				/* Determine the bucket corresponding to this key */
-				int targetBucket = hashFunction.hashCode(old.getKey()) % buckets.length;
-				/*
-				 * Within that bucket there is a linked list, since we're using Separate
-				 * Chaining
-				 */
-				List<BucketNode<K, V>> L = buckets[targetBucket];
-				/* Finally, add the key/value to the linked list */
-				L.add(0, new BucketNode<K, V>(old.getKey(), old.getValue()));
 
+		/* Finally, add the key/value to the linked list of its bucket */
+		bucket_for_add(hash).add(0, new BucketNode<K, V>(key, value, hash));
+		currentSize++;
+	}
+
+	/* Gives a node a new value, or removes it if the value is null */
+	private V update(BucketNode<K, V> BN, V value) {
+		if (value != null) {
+			BN.value = value;
+		} else {
+			bucket(BN.hash).remove(BN); // Nodes are only equal to themselves
+			currentSize--;
+		}
+		return value;
+	}
+
+	/* The hash of a key, with its high bits folded into the low ones that pick the bucket */
+	private int hash(K key) {
+		int h = hashFunction.hashCode(key);
+		return h ^ (h >>> 16);
+	}
+
+	/* The list where a key with this hash lives, or null if its bucket is empty */
+	private List<BucketNode<K, V>> bucket(int hash) {
+		if (oldBuckets != null) {
+			int old = hash & (oldBuckets.length - 1);
+			if (old >= migrated)
+				return oldBuckets[old];
+		}
+		return buckets[hash & (buckets.length - 1)];
+	}
+
+	/* Same as bucket, creating the list if the bucket is empty */
+	private List<BucketNode<K, V>> bucket_for_add(int hash) {
+		if (oldBuckets != null) {
+			int old = hash & (oldBuckets.length - 1);
+			if (old >= migrated) {
+				if (oldBuckets[old] == null)
+					oldBuckets[old] = new LinkedList<BucketNode<K, V>>();
+				return oldBuckets[old];
 			}
 		}
+		return new_bucket(hash);
+	}
 
+	private List<BucketNode<K, V>> new_bucket(int hash) {
+		int target = hash & (buckets.length - 1);
+		if (buckets[target] == null)
+			buckets[target] = new LinkedList<BucketNode<K, V>>();
+		return buckets[target];
+	}
+
+	/* The tables holding nodes: the old one while growing, and the current one */
+	private List<List<BucketNode<K, V>>[]> tables() {
+		List<List<BucketNode<K, V>>[]> result = new ArrayList<List<BucketNode<K, V>>[]>(2);
+		if (oldBuckets != null)
+			result.add(oldBuckets);
+		result.add(buckets);
+		return result;
+	}
+
+	/*
+	 * An empty table of buckets. An array of a generic type cannot be created, so
+	 * an array of unknown lists is cast, which is safe since only lists of
+	 * bucket nodes are ever stored in it
+	 */
+	@SuppressWarnings("unchecked")
+	private static <K, V> List<BucketNode<K, V>>[] new_table(int capacity) {
+		return (List<BucketNode<K, V>>[]) new List<?>[capacity];
 	}
 
-}
\ No newline at end of file
+}
@@ -1,6 +1,8 @@
 package map;
 
 import java.io.PrintStream;
+import java.util.Iterator;
+import java.util.function.BiFunction;
 
 import list.LinkedList;
 import list.List;
@@ -52,18 +54,70 @@ public class LinkedListMap<K, V> implements Map<K, V> {
 	public V remove(K key) {
 		if (key == null)
 			throw new IllegalArgumentException("Parameter cannot be null.");
-		int pos = 0;
-		for (V v : elements) {
+		Iterator<V> it = elements.iterator();
+		while (it.hasNext()) {
+			V v = it.next();
 			K tempKey = extractor.getKey(v);
 			if (tempKey.equals(key)) {
-				elements.remove(pos); // Would break the iteration, but we'll exit now
+				it.remove(); // Unlinks it right where we are, so no second walk
 				return v;
-			} else
-				pos++;
+			}
 		}
 		return null; // Did not remove anything
 	}
 
+	@Override
+	public V putIfAbsent(K key, V value) {
+		if (value == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		V old = get(key);
+		if (old == null)
+			elements.add(0, value);
+		return old;
+	}
+
+	@Override
+	public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+		if (key == null || value == null || remapping == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+
+		Iterator<V> it = elements.iterator();
+		while (it.hasNext()) {
+			V v = it.next();
+			if (extractor.getKey(v).equals(key)) { // Found it!
+				V result = remapping.apply(v, value);
+				it.remove();
+				if (result != null)
+					elements.add(0, result); // Same place put would give it
+				return result;
+			}
+		}
+		elements.add(0, value);
+		return value;
+	}
+
+	@Override
+	public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+		if (key == null || remapping == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+
+		Iterator<V> it = elements.iterator();
+		while (it.hasNext()) {
+			V v = it.next();
+			if (extractor.getKey(v).equals(key)) { // Found it!
+				V result = remapping.apply(key, v);
+				it.remove();
+				if (result != null)
+					elements.add(0, result);
+				return result;
+			}
+		}
+		V result = remapping.apply(key, null);
+		if (result != null)
+			elements.add(0, result);
+		return result;
+	}
+
 	@Override
 	public boolean containsKey(K key) {
 		return get(key) != null;
@@ -1,6 +1,7 @@
 package map;
 
 import java.io.PrintStream;
+import java.util.function.BiFunction;
 
 import list.List;
 
@@ -25,4 +26,59 @@ public interface Map<K, V> {
 	void clear();
 
 	void print(PrintStream out); /* For debugging purposes */
+
+	/*
+	 * The operations below find the key only once in the implementations that
+	 * override them; these defaults combine get, put and remove instead, so they
+	 * look it up several times and are not atomic
+	 */
+
+	/* The value of the key, or defaultValue if it is not in the map */
+	default V getOrDefault(K key, V defaultValue) {
+		V value = get(key);
+		return value == null ? defaultValue : value;
+	}
+
+	/* Adds the key only if it is not in the map; returns the value it already had, or null */
+	default V putIfAbsent(K key, V value) {
+		if (value == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		V old = get(key);
+		if (old == null)
+			put(key, value);
+		return old;
+	}
+
+	/*
+	 * Gives the key the value if it is not in the map, or else the result of
+	 * remapping its old value and the given one, as in merge(key, 1, Integer::sum)
+	 * to count it. A null result removes the key. Returns the new value, or null
+	 * if the key was removed
+	 */
+	default V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+		if (value == null || remapping == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		V old = get(key);
+		V result = old == null ? value : remapping.apply(old, value);
+		if (result == null)
+			remove(key);
+		else
+			put(key, result);
+		return result;
+	}
+
+	/*
+	 * Replaces the value of the key, null if it is not in the map, by the result
+	 * of remapping it. A null result removes the key. Returns the new value
+	 */
+	default V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+		if (remapping == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		V result = remapping.apply(key, get(key));
+		if (result == null)
+			remove(key);
+		else
+			put(key, result);
+		return result;
+	}
 }
\ No newline at end of file
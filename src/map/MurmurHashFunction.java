@@ -0,0 +1,91 @@
+package map;
+
+/**
+ * Hashes the characters of a key with MurmurHash3 (the 32 bit x86 variant),
+ * two characters per 32 bit block. Unlike SimpleHashFunction, which adds up the
+ * characters, every character changes every bit of the result and its
+ * position matters, so anagrams and short strings spread over all the ints.
+ * Keys that are a CharSequence, such as String, are hashed without calling
+ * toString.
+ *
+ * The seed only picks among unrelated hash functions; keeping it secret does
+ * not protect a table from keys chosen to collide, since MurmurHash3 has
+ * collisions that hold for every seed. Tables whose keys come from outside
+ * should use SipHashFunction.seeded instead.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class MurmurHashFunction<K> implements HashFunction<K> {
+
+	private static final int C1 = 0xCC9E2D51;
+	private static final int C2 = 0x1B873593;
+
+	// private fields
+	private int seed;
+
+	public MurmurHashFunction() {
+		this(0);
+	}
+
+	/**
+	 * @param seed Initial value of the hash; different seeds give unrelated hashes
+	 */
+	public MurmurHashFunction(int seed) {
+		this.seed = seed;
+	}
+
+	public int getSeed() {
+		return seed;
+	}
+
+	@Override
+	public int hashCode(K key) {
+		return hash(key instanceof CharSequence ? (CharSequence) key : key.toString(), seed);
+	}
+
+	/**
+	 * Hashes the characters of a string.
+	 *
+	 * @param chars The characters to hash
+	 * @param seed  Initial value of the hash
+	 * @return The MurmurHash3 of the UTF-16 characters
+	 */
+	public static int hash(CharSequence chars, int seed) {
+		int h = seed;
+		int length = chars.length();
+		int i = 1;
+		for (; i < length; i += 2) {
+			int k = chars.charAt(i - 1) | chars.charAt(i) << 16;
+			h = mixH(h, mixK(k));
+		}
+		if ((length & 1) == 1)
+			h ^= mixK(chars.charAt(length - 1));
+		return fmix(h ^ 2 * length);
+	}
+
+	/**
+	 * The final mix of MurmurHash3, a bijection of the ints in which every bit of
+	 * the input affects every bit of the output.
+	 *
+	 * @param h The value to mix
+	 * @return The mixed value
+	 */
+	public static int fmix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	private static int mixK(int k) {
+		return Integer.rotateLeft(k * C1, 15) * C2;
+	}
+
+	private static int mixH(int h, int k) {
+		return Integer.rotateLeft(h ^ k, 13) * 5 + 0xE6546B64;
+	}
+
+}
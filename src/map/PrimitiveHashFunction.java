@@ -0,0 +1,49 @@
+package map;
+
+/**
+ * A fast hash for keys that are boxed primitives: an Integer, Character,
+ * Short, Byte or Long is hashed from its value with the final mix of
+ * MurmurHash3, without building its text as toString would. Any other key is
+ * hashed by a fallback hash function.
+ *
+ * The mix is a bijection, so distinct ints never collide, and it spreads
+ * consecutive values over all the buckets.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class PrimitiveHashFunction<K> implements HashFunction<K> {
+
+	// private fields
+	private int seed;
+	private HashFunction<K> fallback;
+
+	public PrimitiveHashFunction() {
+		this(0, new MurmurHashFunction<K>());
+	}
+
+	/**
+	 * @param seed     Mixed into the value before hashing it
+	 * @param fallback Hashes the keys that are not boxed primitives
+	 */
+	public PrimitiveHashFunction(int seed, HashFunction<K> fallback) {
+		if (fallback == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		this.seed = seed;
+		this.fallback = fallback;
+	}
+
+	@Override
+	public int hashCode(K key) {
+		if (key instanceof Integer || key instanceof Short || key instanceof Byte)
+			return MurmurHashFunction.fmix(((Number) key).intValue() ^ seed);
+		if (key instanceof Character)
+			return MurmurHashFunction.fmix((Character) key ^ seed);
+		if (key instanceof Long) {
+			long value = (Long) key;
+			return MurmurHashFunction.fmix((int) (value ^ value >>> 32) ^ seed);
+		}
+		return fallback.hashCode(key);
+	}
+
+}
@@ -0,0 +1,295 @@
+package map;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.function.BiFunction;
+
+import list.ArrayList;
+import list.List;
+
+/**
+ * A hash table with open addressing: the keys, values and hashes live in three
+ * flat arrays, so an entry needs no node of its own and a lookup reads
+ * consecutive slots instead of following the links of a list.
+ *
+ * Collisions are resolved with linear probing, ordered by Robin Hood hashing:
+ * an entry being inserted takes the slot of any entry that is closer to its
+ * own home slot, which then moves on in its place. That keeps every entry near
+ * its home, and lets a lookup stop as soon as it reaches an entry closer to
+ * home than the key would be. Removal shifts the following entries one slot
+ * back instead of leaving a tombstone, so the table never degrades after many
+ * removals.
+ *
+ * The capacity is always a power of two, and the hash function is only asked
+ * for a key once per operation; its result is scrambled by a multiplication so
+ * that even weak hash functions spread over all the slots.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class RobinHoodHashMap<K, V> implements Map<K, V> {
+
+	private static final double loadFactor = 0.75;
+	private static final int DEFAULT_SIZE = 16;
+
+	// private fields
+	private int currentSize;
+	private Object[] keys; // null for the empty slots
+	private Object[] values;
+	private int[] hashes; // scrambled hash of the key in the same slot
+	private int mask; // capacity - 1
+	private int threshold; // size at which the table grows
+	private HashFunction<K> hashFunction;
+
+	public RobinHoodHashMap(int initialCapacity, HashFunction<K> hashFunction) {
+		if (initialCapacity < 1)
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		if (hashFunction == null)
+			throw new IllegalArgumentException("Hash function cannot be null");
+
+		this.hashFunction = hashFunction;
+		int capacity = DEFAULT_SIZE;
+		while (capacity * loadFactor < initialCapacity && capacity < 1 << 30)
+			capacity <<= 1;
+		allocate(capacity);
+	}
+
+	public RobinHoodHashMap(HashFunction<K> hashFunction) {
+		this(DEFAULT_SIZE, hashFunction);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V get(K key) {
+		if (key == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+
+		int slot = find(key, hash(key));
+		return slot < 0 ? null : (V) values[slot];
+	}
+
+	@Override
+	public void put(K key, V value) {
+		if (key == null || value == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+
+		int hash = hash(key);
+		int slot = find(key, hash);
+		if (slot >= 0) { // Can't have two elements with same key
+			values[slot] = value;
+			return;
+		}
+		add(key, value, hash);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V remove(K key) {
+		if (key == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+
+		int slot = find(key, hash(key));
+		if (slot < 0)
+			return null;
+		V result = (V) values[slot];
+		delete(slot);
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V putIfAbsent(K key, V value) {
+		if (key == null || value == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+
+		int hash = hash(key);
+		int slot = find(key, hash);
+		if (slot >= 0)
+			return (V) values[slot];
+		add(key, value, hash);
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+		if (key == null || value == null || remapping == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+
+		int hash = hash(key);
+		int slot = find(key, hash);
+		if (slot < 0) {
+			add(key, value, hash);
+			return value;
+		}
+		return update(slot, remapping.apply((V) values[slot], value));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+		if (key == null || remapping == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+
+		int hash = hash(key);
+		int slot = find(key, hash);
+		V result = remapping.apply(key, slot < 0 ? null : (V) values[slot]);
+		if (slot >= 0)
+			return update(slot, result);
+		if (result != null)
+			add(key, result, hash);
+		return result;
+	}
+
+	@Override
+	public boolean containsKey(K key) {
+		if (key == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		return find(key, hash(key)) >= 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public List<K> getKeys() {
+		List<K> result = new ArrayList<K>(Math.max(currentSize, 1));
+		for (int i = 0; i < keys.length; i++)
+			if (keys[i] != null)
+				result.add((K) keys[i]);
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public List<V> getValues() {
+		List<V> result = new ArrayList<V>(Math.max(currentSize, 1));
+		for (int i = 0; i < keys.length; i++)
+			if (keys[i] != null)
+				result.add((V) values[i]);
+		return result;
+	}
+
+	@Override
+	public int size() {
+		return currentSize;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public void clear() {
+		currentSize = 0;
+		Arrays.fill(keys, null);
+		Arrays.fill(values, null);
+	}
+
+	@Override
+	public void print(PrintStream out) {
+		for (int i = 0; i < keys.length; i++)
+			if (keys[i] != null)
+				out.printf("(%s, %s)\n", keys[i], values[i]);
+	}
+
+	/* The hash of a key, scrambled so that its low bits depend on all of its bits */
+	private int hash(K key) {
+		int h = hashFunction.hashCode(key) * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/* How far the entry in a slot is from its home slot */
+	private int distance(int slot) {
+		return (slot - hashes[slot]) & mask;
+	}
+
+	/* The slot of a key, or -1 if it is not in the table */
+	private int find(K key, int hash) {
+		int slot = hash & mask;
+		for (int distance = 0;; distance++) {
+			if (keys[slot] == null || distance(slot) < distance)
+				return -1; // It would have taken this slot
+			if (hashes[slot] == hash && keys[slot].equals(key))
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/* Adds a key that is not in the table, growing it first if it is full */
+	private void add(K key, V value, int hash) {
+		if (currentSize >= threshold) {
+			rehash(2 * keys.length);
+		}
+		insert(key, value, hash);
+		currentSize++;
+	}
+
+	/* Gives a slot a new value, or empties it if the value is null */
+	private V update(int slot, V value) {
+		if (value != null)
+			values[slot] = value;
+		else
+			delete(slot);
+		return value;
+	}
+
+	/* Empties a slot, shifting back the entries after it until one that is already at home */
+	private void delete(int slot) {
+		int next = (slot + 1) & mask;
+		while (keys[next] != null && distance(next) > 0) {
+			keys[slot] = keys[next];
+			values[slot] = values[next];
+			hashes[slot] = hashes[next];
+			slot = next;
+			next = (next + 1) & mask;
+		}
+		keys[slot] = null;
+		values[slot] = null;
+		currentSize--;
+	}
+
+	/* Adds a key that is not in the table, which has room for it */
+	private void insert(Object key, Object value, int hash) {
+		int slot = hash & mask;
+		int distance = 0;
+		while (keys[slot] != null) {
+			int other = distance(slot);
+			if (other < distance) { // The richer entry gives its slot away and moves on
+				Object swapKey = keys[slot];
+				Object swapValue = values[slot];
+				int swapHash = hashes[slot];
+				keys[slot] = key;
+				values[slot] = value;
+				hashes[slot] = hash;
+				key = swapKey;
+				value = swapValue;
+				hash = swapHash;
+				distance = other;
+			}
+			slot = (slot + 1) & mask;
+			distance++;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		hashes[slot] = hash;
+	}
+
+	private void allocate(int capacity) {
+		keys = new Object[capacity];
+		values = new Object[capacity];
+		hashes = new int[capacity];
+		mask = capacity - 1;
+		threshold = (int) Math.min(capacity * loadFactor, capacity - 1);
+	}
+
+	private void rehash(int capacity) {
+		Object[] oldKeys = keys;
+		Object[] oldValues = values;
+		int[] oldHashes = hashes;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++)
+			if (oldKeys[i] != null)
+				insert(oldKeys[i], oldValues[i], oldHashes[i]);
+	}
+
+}
@@ -0,0 +1,109 @@
+package map;
+
+import java.security.SecureRandom;
+
+/**
+ * Hashes the characters of a key with SipHash-1-3, a keyed hash designed so
+ * that whoever does not know the 128 bit key cannot find keys that collide,
+ * however many they try. A table whose keys come from outside, and could be
+ * chosen to collide, should use a seeded instance, whose key is secret and
+ * different on every run. The seeds of MurmurHashFunction do not give that
+ * protection: its collisions can be built without knowing the seed.
+ *
+ * The characters are hashed as their UTF-16 bytes, little endian, four
+ * characters per 64 bit block, and the result is the low 32 bits of the 64
+ * bit hash. It is slower than MurmurHashFunction, so tables whose keys are
+ * trusted are better off with that one.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class SipHashFunction<K> implements HashFunction<K> {
+
+	private static final int COMPRESSION_ROUNDS = 1;
+	private static final int FINALIZATION_ROUNDS = 3;
+
+	// private fields
+	private long k0, k1; // the two halves of the key
+
+	/**
+	 * @param k0 Low half of the key
+	 * @param k1 High half of the key
+	 */
+	public SipHashFunction(long k0, long k1) {
+		this.k0 = k0;
+		this.k1 = k1;
+	}
+
+	/**
+	 * Return a hash function with a random key, so the keys that collide cannot
+	 * be known beforehand.
+	 *
+	 * @return A hash function keyed by a SecureRandom
+	 */
+	public static <K> SipHashFunction<K> seeded() {
+		SecureRandom random = new SecureRandom();
+		return new SipHashFunction<K>(random.nextLong(), random.nextLong());
+	}
+
+	@Override
+	public int hashCode(K key) {
+		return (int) hash(key instanceof CharSequence ? (CharSequence) key : key.toString(), k0, k1);
+	}
+
+	/**
+	 * Hashes the characters of a string.
+	 *
+	 * @param chars The characters to hash
+	 * @param k0    Low half of the key
+	 * @param k1    High half of the key
+	 * @return The SipHash-1-3 of the UTF-16LE bytes of the characters
+	 */
+	public static long hash(CharSequence chars, long k0, long k1) {
+		long[] v = { k0 ^ 0x736F6D6570736575L, k1 ^ 0x646F72616E646F6DL, k0 ^ 0x6C7967656E657261L,
+				k1 ^ 0x7465646279746573L };
+		int length = chars.length();
+		int i = 0;
+		for (; i + 4 <= length; i += 4) {
+			long m = chars.charAt(i) | (long) chars.charAt(i + 1) << 16 | (long) chars.charAt(i + 2) << 32
+					| (long) chars.charAt(i + 3) << 48;
+			compress(v, m);
+		}
+		/* The last block holds the remaining characters and the length in bytes */
+		long m = (long) (2 * length) << 56;
+		for (int shift = 0; i < length; i++, shift += 16)
+			m |= (long) chars.charAt(i) << shift;
+		compress(v, m);
+
+		v[2] ^= 0xFF;
+		rounds(v, FINALIZATION_ROUNDS);
+		return v[0] ^ v[1] ^ v[2] ^ v[3];
+	}
+
+	private static void compress(long[] v, long m) {
+		v[3] ^= m;
+		rounds(v, COMPRESSION_ROUNDS);
+		v[0] ^= m;
+	}
+
+	private static void rounds(long[] v, int rounds) {
+		long v0 = v[0], v1 = v[1], v2 = v[2], v3 = v[3];
+		for (int r = 0; r < rounds; r++) {
+			v0 += v1;
+			v1 = Long.rotateLeft(v1, 13) ^ v0;
+			v0 = Long.rotateLeft(v0, 32);
+			v2 += v3;
+			v3 = Long.rotateLeft(v3, 16) ^ v2;
+			v0 += v3;
+			v3 = Long.rotateLeft(v3, 21) ^ v0;
+			v2 += v1;
+			v1 = Long.rotateLeft(v1, 17) ^ v2;
+			v2 = Long.rotateLeft(v2, 32);
+		}
+		v[0] = v0;
+		v[1] = v1;
+		v[2] = v2;
+		v[3] = v3;
+	}
+
+}
@@ -0,0 +1,103 @@
+package map;
+
+import java.io.PrintStream;
+import java.util.function.BiFunction;
+
+import list.List;
+
+/**
+ * Makes any Map safe to share between threads by holding a single lock, the
+ * wrapper itself, during every operation, which also makes the upserts of the
+ * wrapped map (putIfAbsent, merge, compute) atomic. Simple, but only one
+ * thread uses the map at a time; ConcurrentHashTable lets them work in
+ * parallel.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class SynchronizedMap<K, V> implements Map<K, V> {
+
+	// private fields
+	private Map<K, V> map;
+
+	/**
+	 * @param map The map to protect, which must not be used except through this
+	 *            wrapper
+	 */
+	public SynchronizedMap(Map<K, V> map) {
+		if (map == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		this.map = map;
+	}
+
+	@Override
+	public synchronized V get(K key) {
+		return map.get(key);
+	}
+
+	@Override
+	public synchronized void put(K key, V value) {
+		map.put(key, value);
+	}
+
+	@Override
+	public synchronized V remove(K key) {
+		return map.remove(key);
+	}
+
+	@Override
+	public synchronized V getOrDefault(K key, V defaultValue) {
+		return map.getOrDefault(key, defaultValue);
+	}
+
+	@Override
+	public synchronized V putIfAbsent(K key, V value) {
+		return map.putIfAbsent(key, value);
+	}
+
+	@Override
+	public synchronized V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+		return map.merge(key, value, remapping);
+	}
+
+	@Override
+	public synchronized V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+		return map.compute(key, remapping);
+	}
+
+	@Override
+	public synchronized boolean containsKey(K key) {
+		return map.containsKey(key);
+	}
+
+	@Override
+	public synchronized List<K> getKeys() {
+		return map.getKeys();
+	}
+
+	@Override
+	public synchronized List<V> getValues() {
+		return map.getValues();
+	}
+
+	@Override
+	public synchronized int size() {
+		return map.size();
+	}
+
+	@Override
+	public synchronized boolean isEmpty() {
+		return map.isEmpty();
+	}
+
+	@Override
+	public synchronized void clear() {
+		map.clear();
+	}
+
+	@Override
+	public synchronized void print(PrintStream out) {
+		map.print(out);
+	}
+
+}
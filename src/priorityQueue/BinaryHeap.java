@@ -0,0 +1,131 @@
+package priorityQueue;
+
+/**
+ * Priority queue stored as a complete binary tree inside an array, where every
+ * value is smaller than or equal to its children. Adding and removing the
+ * minimum take O(log n), and building the heap from n values at once O(n).
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class BinaryHeap<E extends Comparable<? super E>> implements PriorityQueue<E> {
+
+	private static final int DEFAULT_SIZE = 11;
+
+	// private fields
+	private E[] elements;
+	private int currentSize;
+
+	@SuppressWarnings("unchecked")
+	public BinaryHeap(int initialCapacity) {
+		if (initialCapacity < 1)
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		elements = (E[]) new Comparable[initialCapacity]; // Cannot use Object here
+		currentSize = 0;
+	}
+
+	public BinaryHeap() {
+		this(DEFAULT_SIZE);
+	}
+
+	/**
+	 * Builds a heap holding the given values, in O(n) instead of the O(n log n)
+	 * that adding them one by one would take. The array is copied.
+	 *
+	 * @param values Values to be added to the heap
+	 */
+	@SuppressWarnings("unchecked")
+	public BinaryHeap(E[] values) {
+		elements = (E[]) new Comparable[Math.max(values.length, 1)];
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] == null)
+				throw new IllegalArgumentException("Value cannot be null.");
+			elements[i] = values[i];
+		}
+		currentSize = values.length;
+		/* Every parent, from the last one up to the root, sinks to its place */
+		for (int i = currentSize / 2 - 1; i >= 0; i--)
+			siftDown(i);
+	}
+
+	@Override
+	public void add(E e) {
+		if (e == null)
+			throw new IllegalArgumentException("Value cannot be null.");
+		if (size() == elements.length)
+			reAllocate();
+		elements[currentSize] = e;
+		siftUp(currentSize++);
+	}
+
+	@Override
+	public E removeMin() {
+		if (isEmpty())
+			return null;
+		E result = elements[0];
+		elements[0] = elements[--currentSize];
+		elements[currentSize] = null;
+		if (!isEmpty())
+			siftDown(0);
+		return result;
+	}
+
+	@Override
+	public E min() {
+		return isEmpty() ? null : elements[0];
+	}
+
+	@Override
+	public int size() {
+		return currentSize;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < currentSize; i++)
+			elements[i] = null;
+		currentSize = 0;
+	}
+
+	/* Moves the value at index up while it is smaller than its parent */
+	private void siftUp(int index) {
+		E value = elements[index];
+		while (index > 0) {
+			int parent = (index - 1) / 2;
+			if (elements[parent].compareTo(value) <= 0)
+				break;
+			elements[index] = elements[parent];
+			index = parent;
+		}
+		elements[index] = value;
+	}
+
+	/* Moves the value at index down while it is bigger than its smallest child */
+	private void siftDown(int index) {
+		E value = elements[index];
+		int half = currentSize / 2; // Positions from here on are leaves
+		while (index < half) {
+			int child = 2 * index + 1;
+			if (child + 1 < currentSize && elements[child + 1].compareTo(elements[child]) < 0)
+				child++;
+			if (value.compareTo(elements[child]) <= 0)
+				break;
+			elements[index] = elements[child];
+			index = child;
+		}
+		elements[index] = value;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void reAllocate() {
+		E[] newElements = (E[]) new Comparable[2 * size()]; // Cannot use Object here
+		System.arraycopy(elements, 0, newElements, 0, size());
+		elements = newElements;
+	}
+
+}
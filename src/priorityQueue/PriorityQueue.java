@@ -0,0 +1,46 @@
+package priorityQueue;
+
+public interface PriorityQueue<E extends Comparable<? super E>> {
+
+	/**
+	 * Add a new value to the queue.
+	 * 
+	 * @param e Value to be added to the queue
+	 * @throws IllegalArgumentException If the value e is null
+	 */
+	void add(E e) throws IllegalArgumentException;
+
+	/**
+	 * Remove the smallest value from the queue.
+	 * 
+	 * @return The value that was removed, or null if the queue is empty
+	 */
+	E removeMin();
+
+	/**
+	 * Return the smallest value in the queue without removing it.
+	 * 
+	 * @return The smallest value, or null if the queue is empty
+	 */
+	E min();
+
+	/**
+	 * Return the amount of values in the queue.
+	 * 
+	 * @return The amount of values in the queue
+	 */
+	int size();
+
+	/**
+	 * Determine whether the queue is empty.
+	 * 
+	 * @return True if the queue is empty, false otherwise.
+	 */
+	boolean isEmpty();
+
+	/**
+	 * Remove all of the values from the queue.
+	 */
+	void clear();
+
+}
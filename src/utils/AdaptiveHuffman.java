@@ -0,0 +1,250 @@
+package utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Adaptive Huffman coding (algorithm FGK), which compresses in a single pass:
+ * there is no frequency table to build beforehand, since the encoder and the
+ * decoder start with the same empty tree and update it in the same way after
+ * every symbol. That makes it usable on streams of unknown length, such as
+ * sockets or growing logs.
+ *
+ * The tree always has a leaf of weight 0 (NYT, not yet transmitted). A symbol
+ * seen for the first time is sent as the code of NYT followed by the symbol in
+ * SYMBOL_BITS bits, and NYT is split into a new NYT and a leaf for the symbol.
+ * The nodes are numbered so that the weights never decrease with the number
+ * and siblings have consecutive numbers (the sibling property); to increment a
+ * weight, the node is first swapped with the highest numbered node of its
+ * weight, which keeps the tree a Huffman tree. Updating costs at most the depth
+ * of the tree times the amount of nodes of equal weight, so the latency of
+ * every symbol is bounded by the size of the alphabet.
+ *
+ * The symbols are bytes, plus END_OF_STREAM to mark where the stream ends.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class AdaptiveHuffman {
+
+	public static final int END_OF_STREAM = 256;
+	public static final int SYMBOL_BITS = 9;
+
+	private static final int NYT = -1;
+
+	// private fields
+	private Node root, nyt;
+	private Node[] leaves; // by symbol
+	private Node[] nodes; // by number, the root has the highest
+	private long[] path; // codes too long for a single long, 64 bits at a time
+
+	public AdaptiveHuffman() {
+		reset();
+	}
+
+	/**
+	 * Goes back to the empty tree, to start a new stream.
+	 */
+	public void reset() {
+		leaves = new Node[END_OF_STREAM + 1];
+		nodes = new Node[2 * leaves.length + 1]; // every symbol and NYT as leaves
+		path = new long[(nodes.length + 63) / 64];
+		root = nyt = new Node(NYT, nodes.length - 1);
+		nodes[root.number] = root;
+	}
+
+	/**
+	 * Writes the code of a symbol and updates the tree.
+	 *
+	 * @param symbol A byte value, or END_OF_STREAM
+	 * @param out    Destination of the bits
+	 */
+	public void encode(int symbol, BitWriter out) {
+		if (symbol < 0 || symbol > END_OF_STREAM)
+			throw new IllegalArgumentException("Symbol must be between 0 and " + END_OF_STREAM);
+		Node leaf = leaves[symbol];
+		if (leaf == null) {
+			writePath(nyt, out);
+			out.write(symbol, SYMBOL_BITS);
+		} else {
+			writePath(leaf, out);
+		}
+		update(symbol);
+	}
+
+	/**
+	 * Reads the code of a symbol and updates the tree the same way encode did.
+	 *
+	 * @param in Source of the bits
+	 * @return A byte value, or END_OF_STREAM
+	 * @throws IllegalStateException If the bits end or are not valid
+	 */
+	public int decode(BitReader in) {
+		Node n = root;
+		while (n.getLeftChild() != null)
+			n = (Node) (in.readBit() == 0 ? n.getLeftChild() : n.getRightChild());
+		int symbol = n.symbol;
+		if (n == nyt) {
+			symbol = (int) in.read(SYMBOL_BITS);
+			if (symbol > END_OF_STREAM || leaves[symbol] != null)
+				throw new IllegalStateException("Invalid symbol " + symbol);
+		}
+		update(symbol);
+		return symbol;
+	}
+
+	/**
+	 * Compresses a stream until it ends. Whenever the input has nothing more
+	 * available for the moment, the complete bytes encoded so far are sent, so
+	 * a live stream is never held back by this side.
+	 *
+	 * @param in  Source of the bytes, which is not closed
+	 * @param out Destination of the bits, which is not closed
+	 * @return The amount of bytes read
+	 * @throws IOException If reading or writing fails
+	 */
+	public static long compress(InputStream in, OutputStream out) throws IOException {
+		AdaptiveHuffman model = new AdaptiveHuffman();
+		BitWriter bits = new BitWriter(out);
+		byte[] buffer = new byte[HuffManTree.CHUNK_SIZE];
+		long count = 0;
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			for (int i = 0; i < read; i++)
+				model.encode(buffer[i] & 0xFF, bits);
+			count += read;
+			if (in.available() == 0)
+				bits.drain();
+		}
+		model.encode(END_OF_STREAM, bits);
+		bits.flush();
+		return count;
+	}
+
+	/**
+	 * Decompresses a stream written by compress, up to its END_OF_STREAM.
+	 *
+	 * @param in  Source of the bits, which is not closed
+	 * @param out Destination of the bytes, which is not closed
+	 * @return The amount of bytes written
+	 * @throws IOException If reading or writing fails, or the bits are not valid
+	 */
+	public static long decompress(InputStream in, OutputStream out) throws IOException {
+		AdaptiveHuffman model = new AdaptiveHuffman();
+		BitReader bits = new BitReader(in);
+		long count = 0;
+		try {
+			for (int symbol; (symbol = model.decode(bits)) != END_OF_STREAM; count++)
+				out.write(symbol);
+		} catch (IllegalStateException e) {
+			throw new IOException("Corrupt adaptive stream", e);
+		}
+		out.flush();
+		return count;
+	}
+
+	/* The path from the root to a node, as 0 for left and 1 for right */
+	private void writePath(Node node, BitWriter out) {
+		int words = 0, length = 0;
+		long code = 0;
+		for (Node n = node; n != root; n = parent(n)) {
+			if (length == 64) {
+				path[words++] = code;
+				code = 0;
+				length = 0;
+			}
+			if (n.getParent().getRightChild() == n)
+				code |= 1L << length;
+			length++;
+		}
+		out.write(code, length); // The bits closest to the root were found last
+		while (words > 0)
+			out.write(path[--words], 64);
+	}
+
+	private void update(int symbol) {
+		Node q = leaves[symbol];
+		if (q == null) { // NYT becomes the parent of a new NYT and of the new leaf
+			Node parent = nyt;
+			nyt = new Node(NYT, parent.number - 2);
+			q = new Node(symbol, parent.number - 1);
+			parent.setLeftChild(nyt);
+			parent.setRightChild(q);
+			nyt.setParent(parent);
+			q.setParent(parent);
+			nodes[nyt.number] = nyt;
+			nodes[q.number] = q;
+			leaves[symbol] = q;
+		}
+		while (q != null) {
+			Node leader = leader(q);
+			if (leader != q)
+				swap(q, leader);
+			q.weight++;
+			q = parent(q);
+		}
+	}
+
+	/*
+	 * The highest numbered node with the same weight. The parent only has the
+	 * same weight when the sibling is NYT, and a node cannot trade places with
+	 * its own parent, so it is left out
+	 */
+	private Node leader(Node q) {
+		Node leader = q;
+		for (int i = q.number + 1; i < nodes.length && nodes[i].weight == q.weight; i++)
+			if (nodes[i] != q.getParent())
+				leader = nodes[i];
+		return leader;
+	}
+
+	/* Trades the places (and numbers) of two nodes, neither an ancestor of the other */
+	private void swap(Node a, Node b) {
+		Node parentA = parent(a), parentB = parent(b);
+		boolean leftA = parentA.getLeftChild() == a, leftB = parentB.getLeftChild() == b;
+		if (leftA)
+			parentA.setLeftChild(b);
+		else
+			parentA.setRightChild(b);
+		if (leftB)
+			parentB.setLeftChild(a);
+		else
+			parentB.setRightChild(a);
+		a.setParent(parentB);
+		b.setParent(parentA);
+
+		int number = a.number;
+		a.number = b.number;
+		b.number = number;
+		nodes[a.number] = a;
+		nodes[b.number] = b;
+	}
+
+	private static Node parent(Node n) {
+		return (Node) n.getParent();
+	}
+
+	/*
+	 * A node of the tree, keyed by its weight like the nodes of huffman_tree so
+	 * that BinaryTreePrinter can show it. The weight is kept unboxed, since it
+	 * changes after every symbol
+	 */
+	private static class Node extends BTNode<Long, Integer> {
+		private long weight;
+		private int symbol;
+		private int number;
+
+		public Node(int symbol, int number) {
+			super(0L, symbol);
+			this.symbol = symbol;
+			this.number = number;
+		}
+
+		@Override
+		public Long getKey() {
+			return weight;
+		}
+	}
+
+}
@@ -0,0 +1,230 @@
+package utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import list.ArrayList;
+import list.List;
+
+/**
+ * Compresses every file of a directory tree, each one through the whole
+ * pipeline of HuffFile.compress (load, count, code, encode and write), with
+ * many files in flight at once so that the latency of opening, reading and
+ * writing small files overlaps instead of adding up.
+ *
+ * Every file runs on a virtual thread of its own when the runtime has them
+ * (Java 21 or later), and on a pool of concurrency platform threads otherwise.
+ * In both cases at most concurrency files are compressed at the same time,
+ * which bounds the memory and the open files. The output tree mirrors the
+ * input tree, with EXTENSION added to every file name; if it is inside the
+ * input tree, it is left out of the walk.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class BatchCompressor {
+
+	public static final String EXTENSION = ".huf";
+	public static final int DEFAULT_CONCURRENCY = 4 * Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * The totals of a batch.
+	 */
+	public static class Report {
+		private int files;
+		private long originalBytes, compressedBytes;
+		private long nanos;
+		private boolean virtualThreads;
+		private List<String> failures = new ArrayList<String>();
+
+		private synchronized void add(long original, long compressed) {
+			files++;
+			originalBytes += original;
+			compressedBytes += compressed;
+		}
+
+		private synchronized void fail(Path path, Exception e) {
+			/* File system errors often carry nothing but the path itself */
+			String message = e.getMessage();
+			if (message == null || message.equals(path.toString()))
+				message = e.getClass().getSimpleName();
+			failures.add(path + ": " + message);
+		}
+
+		public int getFiles() {
+			return files;
+		}
+
+		public long getOriginalBytes() {
+			return originalBytes;
+		}
+
+		public long getCompressedBytes() {
+			return compressedBytes;
+		}
+
+		/**
+		 * Return the time the whole batch took, from the start of the walk until
+		 * the last file was written.
+		 *
+		 * @return The elapsed nanoseconds
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+
+		public boolean usedVirtualThreads() {
+			return virtualThreads;
+		}
+
+		/**
+		 * Return the files that could not be compressed.
+		 *
+		 * @return The path of every failed file with the reason
+		 */
+		public List<String> getFailures() {
+			return failures;
+		}
+
+		public double getFilesPerSecond() {
+			return nanos == 0 ? 0 : files * 1e9 / nanos;
+		}
+
+		/**
+		 * Return the amount of original data compressed per second.
+		 *
+		 * @return The throughput in MB (10^6 bytes) per second
+		 */
+		public double getMegabytesPerSecond() {
+			return nanos == 0 ? 0 : originalBytes * 1e3 / nanos;
+		}
+
+		@Override
+		public String toString() {
+			double saved = originalBytes == 0 ? 0 : 100.0 * (originalBytes - compressedBytes) / originalBytes;
+			return String.format("Files: %d compressed, %d failed (%s threads)%n" + "Original size: %d bytes%n"
+					+ "Compressed size: %d bytes%n" + "Saved: %.2f%%%n" + "Elapsed: %.3f s%n"
+					+ "Throughput: %.1f files/s, %.2f MB/s", files, failures.size(),
+					virtualThreads ? "virtual" : "platform", originalBytes, compressedBytes, saved, nanos / 1e9,
+					getFilesPerSecond(), getMegabytesPerSecond());
+		}
+	}
+
+	// private fields
+	private int concurrency;
+	private CodeTableCache cache;
+
+	public BatchCompressor() {
+		this(DEFAULT_CONCURRENCY, null);
+	}
+
+	/**
+	 * @param concurrency Most files compressed at the same time
+	 * @param cache       Codes shared by all the files, or null to build a new
+	 *                    code for every file
+	 */
+	public BatchCompressor(int concurrency, CodeTableCache cache) {
+		if (concurrency < 1)
+			throw new IllegalArgumentException("Concurrency must be at least 1");
+		this.concurrency = concurrency;
+		this.cache = cache;
+	}
+
+	/**
+	 * Compresses every regular file under a directory. A file that cannot be
+	 * compressed, or a directory that cannot be read, is recorded in the report
+	 * and does not stop the others.
+	 *
+	 * @param inputDirectory  Root of the files to compress
+	 * @param outputDirectory Root of the compressed files, created if needed
+	 * @return The totals of the batch
+	 * @throws IOException If the input directory cannot be walked
+	 */
+	public Report compress(String inputDirectory, String outputDirectory) throws IOException {
+		final Path input = Paths.get(inputDirectory).toAbsolutePath().normalize();
+		final Path output = Paths.get(outputDirectory).toAbsolutePath().normalize();
+		final Report report = new Report();
+		final Semaphore permits = new Semaphore(concurrency);
+		long start = System.nanoTime();
+
+		ExecutorService virtualThreads = newVirtualThreadExecutor();
+		report.virtualThreads = virtualThreads != null;
+		final ExecutorService executor = virtualThreads != null ? virtualThreads
+				: Executors.newFixedThreadPool(concurrency);
+		try {
+			Files.walkFileTree(input, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+					return directory.startsWith(output) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) {
+					if (Files.isRegularFile(path) && !path.startsWith(output))
+						submit(executor, permits, report, path, output.resolve(input.relativize(path) + EXTENSION));
+					return FileVisitResult.CONTINUE;
+				}
+
+				/* An unreadable directory or a file deleted meanwhile fails alone */
+				@Override
+				public FileVisitResult visitFileFailed(Path path, IOException e) {
+					report.fail(path, e);
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult postVisitDirectory(Path directory, IOException e) {
+					if (e != null)
+						report.fail(directory, e);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} finally {
+			executor.shutdown();
+			permits.acquireUninterruptibly(concurrency); // Every file is done once all the permits are back
+			permits.release(concurrency);
+		}
+		report.nanos = System.nanoTime() - start;
+		return report;
+	}
+
+	/* Compresses a file on a worker, once a permit is free; the walk waits instead of queuing every file */
+	private void submit(ExecutorService executor, Semaphore permits, Report report, Path source, Path target) {
+		permits.acquireUninterruptibly();
+		executor.execute(() -> {
+			try {
+				File parent = target.toFile().getParentFile();
+				if (parent != null && !parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory())
+					throw new IOException("Cannot create " + parent);
+				long compressed = HuffFile.compress(source.toString(), target.toString(), false, cache);
+				report.add(Files.size(source), compressed);
+			} catch (IOException | RuntimeException e) {
+				report.fail(source, e);
+			} finally {
+				permits.release();
+			}
+		});
+	}
+
+	/*
+	 * An executor that starts a virtual thread per task, or null if the runtime
+	 * has none. It is found by reflection so this class still runs on Java 8
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+package utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Reads back the bits packed by BitWriter, most significant bit first, from a
+ * byte array or from an InputStream. Up to 32 bits can be looked at without
+ * consuming them, which is what the table driven decoder needs; past the end
+ * of the data peek returns zeros, but skipping them is an error.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class BitReader {
+
+	private static final int DEFAULT_SIZE = 8192;
+
+	// private fields
+	private byte[] buffer;
+	private int position; // next byte of the buffer to move into the accumulator
+	private int limit; // amount of valid bytes in the buffer
+	private long accumulator; // the available bits are in its low end
+	private int available;
+	private long consumed; // bits skipped or read since the start
+	private InputStream in;
+
+	public BitReader(byte[] data) {
+		this(data, 0, data.length);
+	}
+
+	/**
+	 * Reads the bits in a portion of a byte array.
+	 *
+	 * @param data   Packed bits
+	 * @param offset Index of the first byte
+	 * @param length Amount of bytes
+	 */
+	public BitReader(byte[] data, int offset, int length) {
+		if (data == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		if (offset < 0 || length < 0 || offset + length > data.length)
+			throw new IndexOutOfBoundsException();
+		buffer = data;
+		position = offset;
+		limit = offset + length;
+	}
+
+	/**
+	 * Reads the bits of a stream, which is not closed.
+	 *
+	 * @param in Source of the packed bits
+	 */
+	public BitReader(InputStream in) {
+		if (in == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		this.in = in;
+		buffer = new byte[DEFAULT_SIZE];
+	}
+
+	/**
+	 * Return the next bits without consuming them.
+	 *
+	 * @param count Amount of bits, between 0 and 32
+	 * @return The bits in the low end of the result, zero padded past the end
+	 * @throws UncheckedIOException If the underlying stream fails
+	 */
+	public int peek(int count) {
+		if (available < count)
+			refill(count);
+		if (available >= count)
+			return (int) (accumulator >>> (available - count)) & (int) ((1L << count) - 1);
+		return (int) (accumulator << (count - available)) & (int) ((1L << count) - 1);
+	}
+
+	/**
+	 * Consumes bits that were looked at with peek.
+	 *
+	 * @param count Amount of bits, between 0 and 32
+	 * @throws IllegalStateException If there are not that many bits left
+	 */
+	public void skip(int count) {
+		if (available < count) {
+			refill(count);
+			if (available < count)
+				throw new IllegalStateException("Unexpected end of the bits");
+		}
+		available -= count;
+		consumed += count;
+	}
+
+	/**
+	 * Reads and consumes the next bits.
+	 *
+	 * @param count Amount of bits, between 0 and 64
+	 * @return The bits in the low end of the result
+	 * @throws IllegalStateException If there are not that many bits left
+	 */
+	public long read(int count) {
+		if (count > 32)
+			return read(count - 32) << 32 | read(32);
+		long result = peek(count) & 0xFFFFFFFFL;
+		skip(count);
+		return result;
+	}
+
+	public int readBit() {
+		return (int) read(1);
+	}
+
+	/**
+	 * Return the amount of bits consumed since the reader was created.
+	 *
+	 * @return The position of the next bit
+	 */
+	public long position() {
+		return consumed;
+	}
+
+	/**
+	 * Discards the rest of the current byte, so the next bit read is the first of
+	 * a byte. This undoes the padding added by BitWriter.flush.
+	 */
+	public void alignToByte() {
+		skip((int) (-consumed & 7));
+	}
+
+	/*
+	 * Moves whole bytes into the accumulator until it has more than 56 bits. The
+	 * stream is only read again if fewer than needed bits are left, so reading a
+	 * live stream, such as a socket, never waits for bits that are not needed yet
+	 */
+	private void refill(int needed) {
+		while (available <= 56) {
+			if (position == limit && (available >= needed || !fillBuffer()))
+				return;
+			accumulator = accumulator << 8 | (buffer[position++] & 0xFF);
+			available += 8;
+		}
+	}
+
+	private boolean fillBuffer() {
+		if (in == null)
+			return false;
+		try {
+			int read = in.read(buffer);
+			if (read <= 0)
+				return false;
+			position = 0;
+			limit = read;
+			return true;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
@@ -0,0 +1,194 @@
+package utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Packs bits into bytes, most significant bit first. The bytes are either kept
+ * in a growable array that can be reused with reset(), or written to an
+ * OutputStream every time the internal buffer fills up.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class BitWriter {
+
+	private static final int DEFAULT_SIZE = 8192;
+
+	// private fields
+	private byte[] buffer;
+	private int position; // amount of complete bytes in the buffer
+	private long pending; // bits that do not complete a byte yet are in the low end
+	private int pendingBits; // always less than 8 between calls
+	private long bitLength; // bits written, without padding
+	private long paddingBits; // zeros added by flush to complete a byte
+	private OutputStream out;
+
+	public BitWriter() {
+		this(DEFAULT_SIZE);
+	}
+
+	public BitWriter(int initialCapacity) {
+		if (initialCapacity < 1)
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		buffer = new byte[initialCapacity];
+	}
+
+	/**
+	 * Creates a writer that sends its bytes to a stream. Call flush once all the
+	 * bits have been written; the stream is not closed.
+	 *
+	 * @param out Destination of the packed bytes
+	 */
+	public BitWriter(OutputStream out) {
+		this(DEFAULT_SIZE);
+		if (out == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		this.out = out;
+	}
+
+	/**
+	 * Appends the lowest length bits of a value, starting by the most significant
+	 * of them.
+	 *
+	 * @param bits   Value holding the bits in its low end
+	 * @param length Amount of bits to write, between 0 and 64
+	 * @throws UncheckedIOException If the underlying stream fails
+	 */
+	public void write(long bits, int length) {
+		if (length < 0 || length > 64)
+			throw new IllegalArgumentException("Length must be between 0 and 64");
+		if (length > 56) { // Would not fit next to the pending bits
+			write(bits >>> 32, length - 32);
+			write(bits, 32);
+			return;
+		}
+		pending = (pending << length) | (bits & ((1L << length) - 1));
+		pendingBits += length;
+		bitLength += length;
+		while (pendingBits >= 8) {
+			pendingBits -= 8;
+			if (position == buffer.length)
+				makeRoom();
+			buffer[position++] = (byte) (pending >>> pendingBits);
+		}
+	}
+
+	public void writeBit(int bit) {
+		write(bit, 1);
+	}
+
+	/**
+	 * Return the amount of bits written since creation or the last reset.
+	 *
+	 * @return The amount of bits, without the padding added by flush
+	 */
+	public long bitLength() {
+		return bitLength;
+	}
+
+	/**
+	 * Return the amount of bytes needed to hold the bits written so far.
+	 *
+	 * @return The bit length, with the padding added by flush, rounded up to a
+	 *         whole amount of bytes
+	 */
+	public long byteLength() {
+		return (bitLength + paddingBits + 7) / 8;
+	}
+
+	/**
+	 * Hands the complete bytes written so far to the stream, without padding; the
+	 * bits of an incomplete byte stay pending. Used to bound the latency of a
+	 * live stream without ending it.
+	 *
+	 * @throws IOException If the stream fails
+	 */
+	public void drain() throws IOException {
+		if (out != null) {
+			out.write(buffer, 0, position);
+			position = 0;
+			out.flush();
+		}
+	}
+
+	/**
+	 * Pads the last byte with zeros, so the next bit starts a new byte, and hands
+	 * all the buffered bytes to the stream (if any).
+	 *
+	 * @throws IOException If the stream fails
+	 */
+	public void flush() throws IOException {
+		if (pendingBits > 0) {
+			paddingBits += 8 - pendingBits;
+			if (position == buffer.length)
+				makeRoom();
+			buffer[position++] = (byte) (pending << (8 - pendingBits));
+			pendingBits = 0;
+		}
+		if (out != null) {
+			out.write(buffer, 0, position);
+			position = 0;
+			out.flush();
+		}
+	}
+
+	/**
+	 * Return a copy of the bytes written so far, including the incomplete last
+	 * byte padded with zeros. Only valid when not writing to a stream.
+	 *
+	 * @return The packed bits
+	 */
+	public byte[] toByteArray() {
+		if (out != null)
+			throw new IllegalStateException("The bytes were sent to a stream");
+		byte[] result = new byte[position + (pendingBits > 0 ? 1 : 0)];
+		System.arraycopy(buffer, 0, result, 0, position);
+		if (pendingBits > 0)
+			result[position] = (byte) (pending << (8 - pendingBits));
+		return result;
+	}
+
+	/**
+	 * Forget every bit written, keeping the buffer so it can be reused.
+	 */
+	public void reset() {
+		position = 0;
+		pending = 0;
+		pendingBits = 0;
+		bitLength = 0;
+		paddingBits = 0;
+	}
+
+	/**
+	 * Return the bits as a string of 0s and 1s, for debugging and reports.
+	 *
+	 * @return One character per bit written, and per bit of padding added by
+	 *         flush
+	 */
+	public String toBitString() {
+		byte[] bytes = toByteArray();
+		long length = bitLength + paddingBits;
+		StringBuilder result = new StringBuilder((int) length);
+		for (long i = 0; i < length; i++)
+			result.append((bytes[(int) (i >>> 3)] >>> (7 - (i & 7)) & 1) == 0 ? '0' : '1');
+		return result.toString();
+	}
+
+	private void makeRoom() {
+		if (out != null) {
+			try {
+				out.write(buffer, 0, position);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			position = 0;
+		} else {
+			byte[] newBuffer = new byte[2 * buffer.length];
+			System.arraycopy(buffer, 0, newBuffer, 0, position);
+			buffer = newBuffer;
+		}
+	}
+
+}
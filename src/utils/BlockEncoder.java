@@ -0,0 +1,232 @@
+package utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import list.ArrayList;
+import list.LinkedList;
+import list.List;
+
+/**
+ * Encodes an input as independent blocks on a thread pool. The input is split
+ * into blocks of a fixed amount of symbols that share a single CodeTable, each
+ * block is encoded into its own BitWriter concurrently, and the results are
+ * concatenated into an EncodedBlocks with an index of where each block starts.
+ * The same index lets the blocks be decoded concurrently too.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class BlockEncoder {
+
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+	/* Blocks decoded ahead of the one being written when decoding to a stream */
+	private static final int DECODE_AHEAD = 2 * Runtime.getRuntime().availableProcessors();
+
+	// private fields
+	private ExecutorService pool;
+	private int blockSize;
+
+	public BlockEncoder() {
+		this(ForkJoinPool.commonPool(), DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * @param pool      The pool whose threads encode the blocks
+	 * @param blockSize Amount of characters or bytes in every block but the last
+	 */
+	public BlockEncoder(ExecutorService pool, int blockSize) {
+		if (pool == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		if (blockSize < 2)
+			throw new IllegalArgumentException("Block size must be at least 2");
+		this.pool = pool;
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * Encodes the code points of a string.
+	 *
+	 * @param table The code of every symbol
+	 * @param data  The text to encode
+	 * @return The encoded blocks
+	 */
+	public EncodedBlocks encode(final CodeTable table, final CharSequence data) {
+		int blocks = Math.max((data.length() + blockSize - 1) / blockSize, 1);
+		int[] starts = new int[blocks + 1];
+		for (int i = 1; i < blocks; i++) {
+			starts[i] = i * blockSize;
+			if (Character.isHighSurrogate(data.charAt(starts[i] - 1)) && Character.isLowSurrogate(data.charAt(starts[i])))
+				starts[i]++; // Never separate the two halves of a surrogate pair
+		}
+		starts[blocks] = data.length();
+
+		List<Future<BitWriter>> results = new ArrayList<Future<BitWriter>>(blocks);
+		final int[] symbolCounts = new int[blocks];
+		for (int i = 0; i < blocks; i++) {
+			final int block = i, start = starts[i], end = starts[i + 1];
+			results.add(pool.submit(() -> {
+				BitWriter out = new BitWriter(Math.max((end - start) / 2, 1));
+				int symbols = 0;
+				for (int j = start; j < end; symbols++) {
+					int c = Character.codePointAt(data, j);
+					table.encode(c, out);
+					j += Character.charCount(c);
+				}
+				symbolCounts[block] = symbols;
+				return out;
+			}));
+		}
+		return collect(results, symbolCounts);
+	}
+
+	/**
+	 * Encodes the bytes between the position and the limit of a buffer, every
+	 * byte being a symbol. The position of the buffer is not changed.
+	 *
+	 * @param table The code of every byte value
+	 * @param data  The bytes to encode
+	 * @return The encoded blocks
+	 */
+	public EncodedBlocks encode(final CodeTable table, final ByteBuffer data) {
+		int length = data.remaining();
+		int blocks = Math.max((length + blockSize - 1) / blockSize, 1);
+
+		List<Future<BitWriter>> results = new ArrayList<Future<BitWriter>>(blocks);
+		int[] symbolCounts = new int[blocks];
+		for (int i = 0; i < blocks; i++) {
+			final int start = data.position() + i * blockSize;
+			final int end = Math.min(start + blockSize, data.limit());
+			symbolCounts[i] = end - start;
+			results.add(pool.submit(() -> {
+				BitWriter out = new BitWriter(Math.max((end - start) / 2, 1));
+				for (int j = start; j < end; j++)
+					table.encode(data.get(j) & 0xFF, out);
+				return out;
+			}));
+		}
+		return collect(results, symbolCounts);
+	}
+
+	/**
+	 * Decodes every block concurrently back into text.
+	 *
+	 * @param table  The code of every symbol
+	 * @param blocks Blocks encoded by encode(CodeTable, CharSequence)
+	 * @return The original text
+	 */
+	public String decodeText(CodeTable table, final EncodedBlocks blocks) {
+		final HuffmanDecoder decoder = new HuffmanDecoder(table); // Read only, so it is shared
+		List<Future<String>> results = new ArrayList<Future<String>>(Math.max(blocks.blockCount(), 1));
+		for (int i = 0; i < blocks.blockCount(); i++) {
+			final int block = i;
+			results.add(pool.submit(() -> decoder.decodeText(blocks.reader(block), blocks.getSymbolCount(block))));
+		}
+		StringBuilder result = new StringBuilder();
+		for (Future<String> block : results)
+			result.append(get(block));
+		return result.toString();
+	}
+
+	/**
+	 * Decodes every block concurrently back into bytes.
+	 *
+	 * @param table  The code of every byte value
+	 * @param blocks Blocks encoded by encode(CodeTable, ByteBuffer)
+	 * @return The original bytes
+	 */
+	public byte[] decodeBytes(CodeTable table, final EncodedBlocks blocks) {
+		final HuffmanDecoder decoder = new HuffmanDecoder(table);
+		final byte[] result = new byte[Math.toIntExact(blocks.totalSymbols())];
+		List<Future<?>> results = new ArrayList<Future<?>>(Math.max(blocks.blockCount(), 1));
+		int start = 0;
+		for (int i = 0; i < blocks.blockCount(); i++) {
+			final int block = i, first = start;
+			results.add(pool.submit(() -> {
+				BitReader in = blocks.reader(block);
+				for (int j = first; j < first + blocks.getSymbolCount(block); j++)
+					result[j] = (byte) decoder.decode(in);
+			}));
+			start += blocks.getSymbolCount(i);
+		}
+		for (Future<?> block : results)
+			get(block);
+		return result;
+	}
+
+	/**
+	 * Decodes the blocks concurrently and writes them to a stream in order, as
+	 * soon as each one is ready. Only a few blocks are decoded ahead of the one
+	 * being written, so the memory used does not grow with the input.
+	 *
+	 * @param table  The code of every byte value
+	 * @param blocks Blocks encoded by encode(CodeTable, ByteBuffer)
+	 * @param out    Destination of the original bytes, which is not closed
+	 * @return The amount of bytes written
+	 * @throws IOException If writing fails
+	 */
+	public long decodeBytes(CodeTable table, final EncodedBlocks blocks, OutputStream out) throws IOException {
+		final HuffmanDecoder decoder = new HuffmanDecoder(table);
+		int count = blocks.blockCount();
+		List<Future<byte[]>> pending = new LinkedList<Future<byte[]>>(); // in the order of the blocks
+		long written = 0;
+		for (int i = 0, next = 0; i < count; i++) {
+			for (; next < count && next < i + DECODE_AHEAD; next++) {
+				final int block = next;
+				if (blocks.getSymbolCount(block) > blocks.getBitLength(block))
+					throw new IllegalStateException("Block " + block + " has more symbols than bits");
+				pending.add(pool.submit(() -> {
+					BitReader in = blocks.reader(block);
+					byte[] result = new byte[blocks.getSymbolCount(block)];
+					for (int j = 0; j < result.length; j++)
+						result[j] = (byte) decoder.decode(in);
+					return result;
+				}));
+			}
+			byte[] block = get(pending.first());
+			pending.remove(0);
+			out.write(block);
+			written += block.length;
+		}
+		return written;
+	}
+
+	/* Waits for every block and concatenates them, each one starting on a byte */
+	private static EncodedBlocks collect(List<Future<BitWriter>> results, int[] symbolCounts) {
+		BitWriter[] writers = new BitWriter[results.size()];
+		long[] bitOffsets = new long[results.size()];
+		long[] bitLengths = new long[results.size()];
+		long bytes = 0;
+		for (int i = 0; i < results.size(); i++) {
+			writers[i] = get(results.get(i));
+			bitOffsets[i] = bytes * 8;
+			bitLengths[i] = writers[i].bitLength();
+			bytes += writers[i].byteLength();
+		}
+		byte[] payload = new byte[Math.toIntExact(bytes)];
+		for (int i = 0; i < writers.length; i++) {
+			byte[] block = writers[i].toByteArray();
+			System.arraycopy(block, 0, payload, (int) (bitOffsets[i] / 8), block.length);
+		}
+		return new EncodedBlocks(payload, bitOffsets, bitLengths, symbolCounts);
+	}
+
+	private static <T> T get(Future<T> result) {
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a block", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+}
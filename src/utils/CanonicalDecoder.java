@@ -0,0 +1,115 @@
+package utils;
+
+/**
+ * Decoder for canonical codes (see CodeTable.canonical). In a canonical code
+ * the codes of each length are consecutive numbers, so instead of one table
+ * entry per code it is enough to know, for every length, the first code, how
+ * many codes there are, and where their symbols start in a list sorted by
+ * (length, symbol). Codes up to FAST_BITS long are also resolved with a single
+ * lookup in a small table; longer ones continue bit by bit from there.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class CanonicalDecoder {
+
+	/* Most codes of a skewed distribution are this short */
+	public static final int FAST_BITS = 9;
+
+	// private fields
+	private long[] firstCode; // indexed by length
+	private int[] count; // indexed by length
+	private int[] offset; // index in sortedSymbols of the first symbol of each length
+	private int[] sortedSymbols;
+	private int[] fast; // (symbol index << 8 | length), or 0 for codes longer than FAST_BITS
+	private int maxLength;
+	private int onlySymbol = -1; // set when a single symbol has the empty code
+
+	/**
+	 * Builds the decoding tables from the code lengths alone.
+	 *
+	 * @param codes A canonical code, such as one returned by CodeTable.canonical
+	 * @throws IllegalArgumentException If the code is not canonical
+	 */
+	public CanonicalDecoder(CodeTable codes) {
+		if (codes == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		int n = codes.size();
+		maxLength = codes.getMaxLength();
+		firstCode = new long[maxLength + 2];
+		count = new int[maxLength + 2];
+		offset = new int[maxLength + 2];
+		sortedSymbols = new int[n];
+		fast = new int[1 << FAST_BITS];
+
+		if (n == 1 && maxLength == 0) {
+			onlySymbol = codes.getSymbol(0);
+			return;
+		}
+		for (int i = 0; i < n; i++)
+			count[codes.getLength(i)]++;
+		long code = 0;
+		for (int len = 1; len <= maxLength; len++) {
+			code = (code + count[len - 1]) << 1;
+			firstCode[len] = code;
+			offset[len + 1] = offset[len] + count[len];
+		}
+
+		/* The table is sorted by symbol, so each length receives them in order */
+		int[] next = offset.clone();
+		for (int i = 0; i < n; i++) {
+			int len = codes.getLength(i);
+			int rank = next[len]++;
+			sortedSymbols[rank] = codes.getSymbol(i);
+			if (codes.getCode(i) != firstCode[len] + rank - offset[len])
+				throw new IllegalArgumentException("The code is not canonical");
+			if (len <= FAST_BITS) {
+				int first = (int) codes.getCode(i) << (FAST_BITS - len);
+				for (int j = first; j < first + (1 << (FAST_BITS - len)); j++)
+					fast[j] = rank << 8 | len;
+			}
+		}
+	}
+
+	/**
+	 * Reads one code and returns its symbol.
+	 *
+	 * @param in Source of the bits
+	 * @return The decoded symbol
+	 * @throws IllegalStateException If the bits are not a valid code or run out
+	 */
+	public int decode(BitReader in) {
+		if (onlySymbol >= 0)
+			return onlySymbol;
+		int entry = fast[in.peek(FAST_BITS)];
+		if (entry != 0) {
+			in.skip(entry & 0xFF);
+			return sortedSymbols[entry >>> 8];
+		}
+		/* Longer than FAST_BITS: extend the code one bit at a time */
+		long code = in.peek(FAST_BITS);
+		in.skip(FAST_BITS);
+		for (int len = FAST_BITS + 1; len <= maxLength; len++) {
+			code = code << 1 | in.readBit();
+			long index = code - firstCode[len];
+			if (Long.compareUnsigned(index, count[len]) < 0)
+				return sortedSymbols[offset[len] + (int) index];
+		}
+		throw new IllegalStateException("Invalid code at bit " + in.position());
+	}
+
+	/**
+	 * Decodes symbols that are Unicode code points into text.
+	 *
+	 * @param in    Source of the bits
+	 * @param count Amount of symbols to decode
+	 * @return The decoded text
+	 */
+	public String decodeText(BitReader in, int count) {
+		StringBuilder result = new StringBuilder(count);
+		for (int i = 0; i < count; i++)
+			result.appendCodePoint(decode(in));
+		return result.toString();
+	}
+
+}
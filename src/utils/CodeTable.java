@@ -0,0 +1,249 @@
+package utils;
+
+import java.util.Arrays;
+
+import map.HashTableSC;
+import map.Map;
+import map.SimpleHashFunction;
+
+/**
+ * The Huffman code of every symbol stored as primitives: the bits of a code in
+ * the low end of a long, and its length in an int. Symbols up to DENSE_LIMIT
+ * are looked up directly by index, the rest with a binary search, so encoding
+ * a symbol never allocates nor hashes.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class CodeTable {
+
+	/* Longest code that fits in the long holding its bits */
+	public static final int MAX_CODE_LENGTH = 64;
+
+	private static final int DENSE_LIMIT = 0x10000;
+
+	// private fields
+	private int[] symbols; // sorted
+	private long[] codes;
+	private int[] lengths;
+	private long[] denseCodes; // indexed by symbol
+	private int[] denseLengths; // -1 for the symbols without a code
+
+	/**
+	 * The arrays are kept, not copied, so the caller must not modify them.
+	 *
+	 * @param symbols Distinct symbols in increasing order
+	 * @param codes   Bits of the code of the symbol at the same index
+	 * @param lengths Length of the code of the symbol at the same index
+	 */
+	public CodeTable(int[] symbols, long[] codes, int[] lengths) {
+		if (symbols == null || codes == null || lengths == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		if (symbols.length != codes.length || symbols.length != lengths.length)
+			throw new IllegalArgumentException("Arrays must have the same length");
+		this.symbols = symbols;
+		this.codes = codes;
+		this.lengths = lengths;
+
+		int denseSize = 0;
+		for (int i = 0; i < symbols.length; i++) {
+			if (lengths[i] < 0 || lengths[i] > MAX_CODE_LENGTH)
+				throw new IllegalArgumentException("Code length must be between 0 and " + MAX_CODE_LENGTH);
+			if (i > 0 && symbols[i] <= symbols[i - 1])
+				throw new IllegalArgumentException("Symbols must be distinct and in increasing order");
+			if (symbols[i] < DENSE_LIMIT)
+				denseSize = symbols[i] + 1;
+		}
+		denseCodes = new long[denseSize];
+		denseLengths = new int[denseSize];
+		for (int i = 0; i < denseSize; i++)
+			denseLengths[i] = -1;
+		for (int i = 0; i < symbols.length && symbols[i] < denseSize; i++) {
+			denseCodes[symbols[i]] = codes[i];
+			denseLengths[symbols[i]] = lengths[i];
+		}
+	}
+
+	/**
+	 * Converts a map like the one returned by huffman_code, where every key is a
+	 * single character and every value its code as 0s and 1s.
+	 *
+	 * @param map a map containing the symbol mapping to it's code
+	 * @return the same codes as a table
+	 * @throws IllegalArgumentException If a code is longer than MAX_CODE_LENGTH
+	 */
+	public static CodeTable fromMap(Map<String, String> map) {
+		FrequencyTable keys = new FrequencyTable(1); // Used only to sort the symbols
+		for (String k : map.getKeys())
+			keys.add(k.codePointAt(0));
+		FrequencyDistribution sorted = keys.toDistribution();
+
+		int[] symbols = new int[sorted.size()];
+		long[] codes = new long[sorted.size()];
+		int[] lengths = new int[sorted.size()];
+		for (int i = 0; i < sorted.size(); i++) {
+			symbols[i] = sorted.getSymbol(i);
+			String code = map.get(sorted.getSymbolText(i));
+			if (code.length() > MAX_CODE_LENGTH)
+				throw new IllegalArgumentException("Code longer than " + MAX_CODE_LENGTH + " bits");
+			for (int j = 0; j < code.length(); j++)
+				codes[i] = codes[i] << 1 | (code.charAt(j) - '0');
+			lengths[i] = code.length();
+		}
+		return new CodeTable(symbols, codes, lengths);
+	}
+
+	/**
+	 * Builds the canonical code for the given code lengths. The codes depend only
+	 * on the lengths: symbols are sorted by length and then by value, and each one
+	 * gets the next available code of its length. That way a header only needs to
+	 * store the length of every symbol for the decoder to rebuild the codes.
+	 *
+	 * @param symbols Distinct symbols, in any order
+	 * @param lengths Code length of the symbol at the same index
+	 * @return The canonical codes
+	 * @throws IllegalArgumentException If the lengths cannot form a prefix code
+	 */
+	public static CodeTable canonical(int[] symbols, int[] lengths) {
+		if (symbols.length != lengths.length)
+			throw new IllegalArgumentException("Arrays must have the same length");
+		int n = symbols.length;
+		/* Sort by symbol, dragging the lengths along */
+		long[] pairs = new long[n];
+		for (int i = 0; i < n; i++) {
+			if (lengths[i] < 0 || lengths[i] > MAX_CODE_LENGTH)
+				throw new IllegalArgumentException("Code length must be between 0 and " + MAX_CODE_LENGTH);
+			pairs[i] = (long) symbols[i] << 32 | lengths[i];
+		}
+		Arrays.sort(pairs);
+		int[] sortedSymbols = new int[n];
+		int[] sortedLengths = new int[n];
+		int[] count = new int[MAX_CODE_LENGTH + 1];
+		for (int i = 0; i < n; i++) {
+			sortedSymbols[i] = (int) (pairs[i] >>> 32);
+			sortedLengths[i] = (int) pairs[i];
+			count[sortedLengths[i]]++;
+		}
+		if (n == 1 && sortedLengths[0] == 0) // A lone symbol needs no bits at all
+			return new CodeTable(sortedSymbols, new long[1], sortedLengths);
+		if (count[0] > 0)
+			throw new IllegalArgumentException("Only a single symbol may have the empty code");
+
+		/* First code of every length, checking that no length runs out of codes */
+		long[] nextCode = new long[MAX_CODE_LENGTH + 1];
+		long code = 0;
+		long left = 1; // codes still available at the current length, capped at n
+		for (int len = 1; len <= MAX_CODE_LENGTH; len++) {
+			code = (code + count[len - 1]) << 1;
+			nextCode[len] = code;
+			left = Math.min(2 * left, n) - count[len];
+			if (left < 0)
+				throw new IllegalArgumentException("Too many codes of length " + len);
+		}
+
+		long[] codes = new long[n];
+		for (int i = 0; i < n; i++)
+			codes[i] = nextCode[sortedLengths[i]]++;
+		return new CodeTable(sortedSymbols, codes, sortedLengths);
+	}
+
+	/**
+	 * Return the amount of symbols with a code.
+	 *
+	 * @return The size of the alphabet
+	 */
+	public int size() {
+		return symbols.length;
+	}
+
+	public int getSymbol(int index) {
+		return symbols[index];
+	}
+
+	public long getCode(int index) {
+		return codes[index];
+	}
+
+	public int getLength(int index) {
+		return lengths[index];
+	}
+
+	/**
+	 * Returns the index of a symbol, or -1 if it has no code.
+	 *
+	 * @param symbol The symbol to search for
+	 * @return Its index in this table, or -1
+	 */
+	public int indexOf(int symbol) {
+		int first = 0, last = symbols.length - 1;
+		while (first <= last) {
+			int mid = (first + last) >>> 1;
+			if (symbols[mid] < symbol)
+				first = mid + 1;
+			else if (symbols[mid] > symbol)
+				last = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	/**
+	 * Writes the code of a symbol.
+	 *
+	 * @param symbol The symbol to encode
+	 * @param out    Destination of the bits
+	 * @throws IllegalArgumentException If the symbol has no code
+	 */
+	public void encode(int symbol, BitWriter out) {
+		if (symbol >= 0 && symbol < denseLengths.length && denseLengths[symbol] >= 0) {
+			out.write(denseCodes[symbol], denseLengths[symbol]);
+			return;
+		}
+		int index = indexOf(symbol);
+		if (index < 0)
+			throw new IllegalArgumentException("Symbol " + symbol + " has no code");
+		out.write(codes[index], lengths[index]);
+	}
+
+	/**
+	 * Return the length of the longest code.
+	 *
+	 * @return The maximum code length, 0 for an empty table
+	 */
+	public int getMaxLength() {
+		int max = 0;
+		for (int i = 0; i < lengths.length; i++)
+			max = Math.max(max, lengths[i]);
+		return max;
+	}
+
+	/**
+	 * Copies the codes into the kind of map huffman_code returns, with every
+	 * symbol as text mapping to its code as 0s and 1s.
+	 *
+	 * @return A map containing the symbol mapping to it's code
+	 */
+	public Map<String, String> toMap() {
+		Map<String, String> map = new HashTableSC<String, String>(Math.max(size(), 1),
+				new SimpleHashFunction<String>());
+		for (int i = 0; i < size(); i++)
+			map.put(new String(Character.toChars(symbols[i])), getCodeText(i));
+		return map;
+	}
+
+	/**
+	 * Return the code of the symbol at an index as 0s and 1s, like the values of
+	 * the map returned by huffman_code.
+	 *
+	 * @param index Index of the symbol
+	 * @return The code as text
+	 */
+	public String getCodeText(int index) {
+		StringBuilder result = new StringBuilder(lengths[index]);
+		for (int i = lengths[index] - 1; i >= 0; i--)
+			result.append((codes[index] >>> i & 1) == 0 ? '0' : '1');
+		return result.toString();
+	}
+
+}
@@ -0,0 +1,396 @@
+package utils;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+
+import map.HashTableSC;
+import map.Map;
+
+/**
+ * Keeps ready to use codes, both the CodeTable that encodes and the
+ * HuffmanDecoder that decodes, for inputs whose frequencies look alike, so that
+ * many similar files do not build the same code again and again.
+ *
+ * A code is found by a fingerprint of the distribution in which every
+ * probability is quantized to its ideal code length in steps of two bits, and
+ * the symbols rarer than 2^-FINGERPRINT_BITS are left out, so small differences
+ * in the counts give the same fingerprint. If no code has the fingerprint, the
+ * most recently used code is tried instead, since similar inputs tend to come
+ * one after the other. A cached code is only reused if it encodes every symbol
+ * of the new input and its penalty is at most maxPenalty: the extra bits per
+ * symbol it needs over the optimal (Huffman) code of the new input, relative
+ * to the average length of that optimal code. Otherwise a new code is built
+ * and takes the place of the old one; a new code that fails that test on its
+ * own input is returned but not cached.
+ *
+ * Since a code that lacks a symbol cannot be reused, a new code gives a code
+ * to every symbol below alphabetSize, even those the input lacks (see
+ * withAlphabet). Those extra symbols make the code table stored with every
+ * input bigger, so that cost counts in the penalty too, at
+ * HEADER_BITS_PER_SYMBOL per extra symbol spread over the symbols of the
+ * input. An input too small to pay for them, such as a file of a few bytes,
+ * gets a code of its own symbols only, which only inputs with no other
+ * symbols can reuse.
+ *
+ * The cache holds at most maxEntries codes and about maxBytes of tables; when
+ * it is full, the least recently used code is evicted.
+ *
+ * Many threads can share a cache. The lock is only held to look codes up and
+ * to add them; a new code is built outside of it, so a miss does not hold up
+ * the other threads, and threads that need a fingerprint whose code is being
+ * built wait for that one instead of building it again.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class CodeTableCache {
+
+	public static final int DEFAULT_MAX_ENTRIES = 64;
+	public static final long DEFAULT_MAX_BYTES = 64L << 20;
+	public static final double DEFAULT_MAX_PENALTY = 0.01;
+	public static final int FINGERPRINT_BITS = 6;
+
+	/* Size of an entry of a dense code table in a header: a one byte varint and the length */
+	public static final int HEADER_BITS_PER_SYMBOL = 16;
+
+	/**
+	 * A cached code.
+	 */
+	public static class Entry {
+		private long fingerprint;
+		private CodeTable table;
+		private HuffmanDecoder decoder;
+		private long bytes;
+		private Entry previous, next; // in order of use, the most recent first
+
+		private Entry(long fingerprint, CodeTable table) {
+			this.fingerprint = fingerprint;
+			this.table = table;
+			this.decoder = new HuffmanDecoder(table);
+			bytes = 16L * table.size() + 4L * decoder.getTableSize();
+		}
+
+		public CodeTable getTable() {
+			return table;
+		}
+
+		public HuffmanDecoder getDecoder() {
+			return decoder;
+		}
+	}
+
+	// private fields
+	private int maxEntries;
+	private long maxBytes;
+	private double maxPenalty;
+	private int alphabetSize;
+	private Function<FrequencyDistribution, CodeTable> builder;
+	private Map<Long, Entry> entries;
+	private Map<Long, FutureTask<Entry>> building; // codes being built, by fingerprint
+	private Entry first, last;
+	private long bytes;
+	private long hits, misses, rejections, evictions;
+
+	public CodeTableCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES, DEFAULT_MAX_PENALTY, HuffFile.BYTE_VALUES,
+				fd -> HuffManTree.huffman_code_limited(fd, HuffFile.MAX_CODE_LENGTH));
+	}
+
+	/**
+	 * @param maxEntries Most codes kept at once
+	 * @param maxBytes   Most memory, approximately, used by the kept tables
+	 * @param maxPenalty   Largest relative penalty of a reused code, such as
+	 *                     0.01 for 1% more bits
+	 * @param alphabetSize Cached codes have a code for every symbol below this
+	 *                     one, or only for those of their input if it is 0
+	 * @param builder      Builds the code of a distribution on a miss
+	 */
+	public CodeTableCache(int maxEntries, long maxBytes, double maxPenalty, int alphabetSize,
+			Function<FrequencyDistribution, CodeTable> builder) {
+		if (builder == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		if (maxEntries < 1 || maxBytes < 1)
+			throw new IllegalArgumentException("The cache must hold at least one code");
+		if (maxPenalty < 0)
+			throw new IllegalArgumentException("Penalty cannot be negative");
+		if (alphabetSize < 0)
+			throw new IllegalArgumentException("Alphabet size cannot be negative");
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+		this.maxPenalty = maxPenalty;
+		this.alphabetSize = alphabetSize;
+		this.builder = builder;
+		entries = new HashTableSC<Long, Entry>(2 * maxEntries + 1, key -> Long.hashCode(key) & 0x7FFFFFFF);
+		building = new HashTableSC<Long, FutureTask<Entry>>(key -> Long.hashCode(key) & 0x7FFFFFFF);
+	}
+
+	/**
+	 * Return a code for a distribution, from the cache if one there is good
+	 * enough, or built and added to the cache otherwise.
+	 *
+	 * @param fd The frequencies of the input to encode
+	 * @return A code that encodes every symbol of fd
+	 */
+	public Entry get(FrequencyDistribution fd) {
+		final long fingerprint = fingerprint(fd);
+		final double optimum = optimalLength(fd);
+		FutureTask<Entry> task;
+		boolean owner = false;
+		synchronized (this) {
+			Entry entry = entries.get(fingerprint);
+			if (entry != null) {
+				if (reusable(entry, fd, optimum)) {
+					hits++;
+					unlink(entry);
+					linkFirst(entry);
+					return entry;
+				}
+				rejections++;
+				remove(entry);
+			} else if (first != null && reusable(first, fd, optimum)) {
+				hits++;
+				return first;
+			}
+			task = building.get(fingerprint);
+			if (task == null) {
+				misses++;
+				task = new FutureTask<Entry>(() -> build(fingerprint, fd, optimum));
+				building.put(fingerprint, task);
+				owner = true;
+			}
+		}
+
+		if (owner) {
+			task.run();
+			return result(task);
+		}
+		/* Another thread is building the code of this fingerprint; try it once it is in the cache */
+		Entry entry;
+		try {
+			entry = result(task);
+		} catch (RuntimeException | Error e) {
+			return get(fd); // Its builder failed; build it here, and fail here too if it fails again
+		}
+		synchronized (this) {
+			if (reusable(entry, fd, optimum)) {
+				hits++;
+				return entry;
+			}
+		}
+		return get(fd);
+	}
+
+	/*
+	 * Builds a code without holding the lock, then adds it to the cache, unless it
+	 * is not even good enough for its own input
+	 */
+	private Entry build(long fingerprint, FrequencyDistribution fd, double optimum) {
+		Entry entry = null;
+		try {
+			entry = new Entry(fingerprint, builder.apply(worthPadding(fd, optimum) ? withAlphabet(fd, alphabetSize) : fd));
+			return entry;
+		} finally {
+			synchronized (this) {
+				building.remove(fingerprint);
+				if (entry != null && reusable(entry, fd, optimum)) {
+					entries.put(fingerprint, entry);
+					linkFirst(entry);
+					bytes += entry.bytes;
+					while (entries.size() > maxEntries || bytes > maxBytes && entries.size() > 1) {
+						remove(last);
+						evictions++;
+					}
+				}
+			}
+		}
+	}
+
+	/* The code built by a task, waiting for it; a failure of the builder is thrown again */
+	private static Entry result(FutureTask<Entry> task) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return task.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof Error)
+						throw (Error) e.getCause();
+					throw (RuntimeException) e.getCause();
+				}
+			}
+		} finally {
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Return the fingerprint of a distribution: a hash of every symbol with its
+	 * probability quantized to floor(-log2(p)) / 2, leaving out the symbols
+	 * rarer than 2^-FINGERPRINT_BITS, whose presence varies the most.
+	 *
+	 * @param fd The frequencies of an input
+	 * @return The fingerprint
+	 */
+	public static long fingerprint(FrequencyDistribution fd) {
+		long hash = 0;
+		for (int i = 0; i < fd.size(); i++) {
+			double p = (double) fd.getFrequency(i) / fd.total();
+			long level = (long) (-Math.log(p) / Math.log(2));
+			if (level < FINGERPRINT_BITS)
+				hash = (hash ^ ((long) fd.getSymbol(i) << 8 | level / 2)) * 0x9E3779B97F4A7C15L;
+		}
+		/* Final mix of MurmurHash3, so every bit of the input affects every bit */
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	/**
+	 * Adds the symbols below alphabetSize that a distribution lacks, with a
+	 * frequency of 1, so its code can also encode inputs that have them. Those
+	 * symbols get long codes, so the code stays almost as short for the input
+	 * itself.
+	 *
+	 * @param fd           The frequencies of an input
+	 * @param alphabetSize Every symbol below this one gets a frequency
+	 * @return The same frequencies, with the missing symbols added
+	 */
+	public static FrequencyDistribution withAlphabet(FrequencyDistribution fd, int alphabetSize) {
+		FrequencyTable table = new FrequencyTable(alphabetSize);
+		for (int i = 0; i < fd.size(); i++)
+			table.add(fd.getSymbol(i), fd.getFrequency(i));
+		for (int symbol = 0; symbol < alphabetSize; symbol++)
+			if (table.get(symbol) == 0)
+				table.add(symbol);
+		return table.toDistribution();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Return how many times a code had the right fingerprint but was not reused,
+	 * since it lacked symbols or its penalty was too high. Each one is also
+	 * counted as a miss.
+	 *
+	 * @return The amount of rejected codes
+	 */
+	public synchronized long getRejections() {
+		return rejections;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Return the approximate memory used by the cached tables.
+	 *
+	 * @return The bytes of all the cached codes
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		first = last = null;
+		bytes = 0;
+	}
+
+	/*
+	 * Whether a code, with its extra table entries, costs at most maxPenalty
+	 * more than the optimal code of fd, whose average length is optimum
+	 */
+	private boolean reusable(Entry entry, FrequencyDistribution fd, double optimum) {
+		double bits = averageLength(fd, entry.table);
+		return bits >= 0 && bits + headerBits(entry.table.size() - fd.size(), fd) - optimum <= maxPenalty * optimum;
+	}
+
+	/* Whether the input is big enough to pay for the symbols below alphabetSize that it lacks */
+	private boolean worthPadding(FrequencyDistribution fd, double optimum) {
+		int extra = alphabetSize;
+		for (int i = 0; i < fd.size(); i++)
+			if (fd.getSymbol(i) < alphabetSize)
+				extra--;
+		return extra > 0 && fd.total() > 0 && headerBits(extra, fd) <= maxPenalty * optimum;
+	}
+
+	/* The cost of extra entries in the code table, in bits per symbol of the input */
+	private static double headerBits(int extraSymbols, FrequencyDistribution fd) {
+		return extraSymbols <= 0 ? 0 : (double) HEADER_BITS_PER_SYMBOL * extraSymbols / fd.total();
+	}
+
+	/*
+	 * The average code length, in bits per symbol, of encoding fd with a table,
+	 * or -1 if the table lacks some symbol of fd. Both are sorted by symbol, so
+	 * they are walked side by side
+	 */
+	private static double averageLength(FrequencyDistribution fd, CodeTable table) {
+		double bits = 0;
+		int j = 0;
+		for (int i = 0; i < fd.size(); i++) {
+			while (j < table.size() && table.getSymbol(j) < fd.getSymbol(i))
+				j++;
+			if (j == table.size() || table.getSymbol(j) != fd.getSymbol(i))
+				return -1;
+			bits += (double) fd.getFrequency(i) / fd.total() * table.getLength(j);
+		}
+		return bits;
+	}
+
+	/* The average length, in bits per symbol, of the Huffman code of fd */
+	private static double optimalLength(FrequencyDistribution fd) {
+		long[] frequencies = new long[fd.size()];
+		for (int i = 0; i < fd.size(); i++)
+			frequencies[i] = fd.getFrequency(i);
+		int[] lengths = LengthLimitedCode.lengths(frequencies, CodeTable.MAX_CODE_LENGTH);
+		double bits = 0;
+		for (int i = 0; i < fd.size(); i++)
+			bits += (double) fd.getFrequency(i) / fd.total() * lengths[i];
+		return bits;
+	}
+
+	private void remove(Entry entry) {
+		entries.remove(entry.fingerprint);
+		unlink(entry);
+		bytes -= entry.bytes;
+	}
+
+	private void linkFirst(Entry entry) {
+		entry.previous = null;
+		entry.next = first;
+		if (first != null)
+			first.previous = entry;
+		first = entry;
+		if (last == null)
+			last = entry;
+	}
+
+	private void unlink(Entry entry) {
+		if (entry.previous != null)
+			entry.previous.next = entry.next;
+		else
+			first = entry.next;
+		if (entry.next != null)
+			entry.next.previous = entry.previous;
+		else
+			last = entry.previous;
+		entry.previous = entry.next = null;
+	}
+
+}
@@ -0,0 +1,175 @@
+package utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A static code trained beforehand on a corpus of typical inputs and known by
+ * an id. Inputs encoded with it only carry the id instead of their own code
+ * table, and are encoded without counting them or building any tree, which is
+ * what makes Huffman coding pay off for messages of a few bytes, whose own
+ * table would be bigger than the message.
+ *
+ * The symbols are bytes, and every byte value has a code, even the ones the
+ * corpus lacks, so any message can be encoded. A message encoded by encode is
+ * laid out as:
+ *
+ * <pre>
+ * id       varint   the id of the codebook
+ * length   varint   amount of bytes of the message
+ * payload           the packed bits of the code of every byte
+ * </pre>
+ *
+ * A codebook file holds MAGIC, the id (varint) and the code lengths in the same
+ * layout as the code table of HuffFile.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class Codebook {
+
+	public static final int MAGIC = 0x48434231; // "HCB1"
+
+	// private fields
+	private int id;
+	private CodeTable table;
+	private HuffmanDecoder decoder;
+
+	/**
+	 * @param id    The id that encoded inputs refer to
+	 * @param table A code for every byte value
+	 */
+	public Codebook(int id, CodeTable table) {
+		if (table == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		if (id < 0)
+			throw new IllegalArgumentException("Id cannot be negative");
+		for (int symbol = 0; symbol < 256; symbol++)
+			if (table.indexOf(symbol) < 0)
+				throw new IllegalArgumentException("Byte " + symbol + " has no code");
+		this.id = id;
+		this.table = table;
+		this.decoder = new HuffmanDecoder(table);
+	}
+
+	/**
+	 * Builds a codebook from the bytes of every file of a corpus together.
+	 *
+	 * @param id     The id of the new codebook
+	 * @param corpus Locations of the files
+	 * @return The trained codebook
+	 * @throws IOException If a file cannot be read
+	 */
+	public static Codebook train(int id, String... corpus) throws IOException {
+		FrequencyTable counts = new FrequencyTable(256);
+		for (String path : corpus) {
+			FrequencyDistribution fd = new MappedInput(path).count();
+			for (int i = 0; i < fd.size(); i++)
+				counts.add(fd.getSymbol(i), fd.getFrequency(i));
+		}
+		FrequencyDistribution fd = CodeTableCache.withAlphabet(counts.toDistribution(), 256);
+		return new Codebook(id, HuffManTree.huffman_code_limited(fd, HuffFile.MAX_CODE_LENGTH));
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public CodeTable getTable() {
+		return table;
+	}
+
+	public HuffmanDecoder getDecoder() {
+		return decoder;
+	}
+
+	/**
+	 * Encodes a message with its codebook id and length in front.
+	 *
+	 * @param message The bytes to encode
+	 * @return The encoded message
+	 */
+	public byte[] encode(byte[] message) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(message.length + 8);
+		try {
+			DataOutputStream out = new DataOutputStream(bytes);
+			HuffFile.writeVarLong(out, id);
+			HuffFile.writeVarLong(out, message.length);
+			BitWriter bits = new BitWriter(out);
+			for (byte b : message)
+				table.encode(b & 0xFF, bits);
+			bits.flush();
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // Memory streams do not fail
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decodes the payload of a message encoded by encode, once its id and length
+	 * have been read.
+	 *
+	 * @param in     Source of the payload
+	 * @param length Amount of bytes of the message
+	 * @return The original message
+	 * @throws IllegalStateException If the payload ends too soon
+	 */
+	public byte[] decode(BitReader in, int length) {
+		byte[] message = new byte[length];
+		for (int i = 0; i < length; i++)
+			message[i] = (byte) decoder.decode(in);
+		return message;
+	}
+
+	/**
+	 * Writes the codebook to a file.
+	 *
+	 * @param path Location of the file, which is overwritten
+	 * @throws IOException If writing fails
+	 */
+	public void save(String path) throws IOException {
+		OutputStream file = new BufferedOutputStream(new FileOutputStream(path));
+		try {
+			DataOutputStream out = new DataOutputStream(file);
+			out.writeInt(MAGIC);
+			HuffFile.writeVarLong(out, id);
+			HuffFile.writeCodeTable(out, table);
+			out.flush();
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Reads a codebook written by save.
+	 *
+	 * @param path Location of the file
+	 * @return The codebook
+	 * @throws IOException If reading fails or the file is not a codebook
+	 */
+	public static Codebook load(String path) throws IOException {
+		InputStream file = new BufferedInputStream(new FileInputStream(path));
+		try {
+			DataInputStream in = new DataInputStream(file);
+			if (in.readInt() != MAGIC)
+				throw new IOException(path + " is not a codebook");
+			long id = HuffFile.readVarLong(in);
+			if (id > Integer.MAX_VALUE)
+				throw new IOException("Invalid codebook id " + id);
+			return new Codebook((int) id, HuffFile.readCodeTable(in, HuffFile.BYTE_VALUES));
+		} catch (IllegalArgumentException e) {
+			throw new IOException(path + " is not a valid codebook", e);
+		} finally {
+			file.close();
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+package utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+
+import map.HashTableSC;
+import map.Map;
+
+/**
+ * The codebooks known to a decoder, by id, so that messages and files that
+ * only carry the id of their codebook can be decoded.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class CodebookRegistry {
+
+	/* Extension of the codebook files that load picks up */
+	public static final String EXTENSION = ".hcb";
+
+	// private fields
+	private Map<Integer, Codebook> codebooks;
+
+	public CodebookRegistry() {
+		codebooks = new HashTableSC<Integer, Codebook>(key -> key & 0x7FFFFFFF);
+	}
+
+	/**
+	 * Reads every codebook file of a directory.
+	 *
+	 * @param directory Location of the codebook files
+	 * @return The codebooks of the directory, none if it does not exist
+	 * @throws IOException If a codebook cannot be read
+	 */
+	public static CodebookRegistry load(String directory) throws IOException {
+		CodebookRegistry registry = new CodebookRegistry();
+		File[] files = new File(directory).listFiles();
+		if (files != null)
+			for (File file : files)
+				if (file.getName().endsWith(EXTENSION))
+					registry.add(Codebook.load(file.getPath()));
+		return registry;
+	}
+
+	/**
+	 * Adds a codebook, replacing the one with the same id, if any.
+	 *
+	 * @param codebook The codebook to add
+	 */
+	public void add(Codebook codebook) {
+		if (codebook == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		codebooks.put(codebook.getId(), codebook);
+	}
+
+	/**
+	 * Return the codebook with an id.
+	 *
+	 * @param id The id of the codebook
+	 * @return The codebook, or null if it is not known
+	 */
+	public Codebook get(int id) {
+		return codebooks.get(id);
+	}
+
+	public int size() {
+		return codebooks.size();
+	}
+
+	/**
+	 * Decodes a message encoded by Codebook.encode with any known codebook.
+	 *
+	 * @param encoded The encoded message
+	 * @return The original message
+	 * @throws IOException If the codebook is not known or the message is not valid
+	 */
+	public byte[] decode(byte[] encoded) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+		long id = HuffFile.readVarLong(in);
+		long length = HuffFile.readVarLong(in);
+		Codebook codebook = id > Integer.MAX_VALUE ? null : get((int) id);
+		if (codebook == null)
+			throw new IOException("Unknown codebook " + id);
+		if (length > Integer.MAX_VALUE)
+			throw new IOException("Invalid message length " + length);
+		try {
+			return codebook.decode(new BitReader(in), (int) length);
+		} catch (IllegalStateException e) {
+			throw new IOException("Corrupt message", e);
+		}
+	}
+
+}
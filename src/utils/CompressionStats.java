@@ -0,0 +1,153 @@
+package utils;
+
+/**
+ * What a code achieves on an input, computed from the frequency of every
+ * symbol and the length of its code alone: the encoded size is the sum of
+ * frequency times length, so neither the input nor the encoded output has to
+ * exist as a string. It costs O(alphabet) time and memory, which makes it an
+ * almost free estimate of how much a huge file would compress once it has been
+ * counted.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class CompressionStats {
+
+	// private fields
+	private int alphabetSize;
+	private long symbols;
+	private long originalBytes;
+	private long encodedBits;
+	private double entropy; // bits per symbol
+
+	/**
+	 * Computes the statistics of text, whose symbols are code points; the size of
+	 * the original is the size of the text in UTF-8.
+	 *
+	 * @param fd    The frequency of every symbol
+	 * @param table The code of every symbol
+	 * @throws IllegalArgumentException If a symbol of fd has no code
+	 */
+	public CompressionStats(FrequencyDistribution fd, CodeTable table) {
+		this(fd, table, utf8Bytes(fd));
+	}
+
+	/**
+	 * Computes the statistics of an input whose original size is known, such as a
+	 * file whose symbols are bytes or tokens.
+	 *
+	 * @param fd            The frequency of every symbol
+	 * @param table         The code of every symbol
+	 * @param originalBytes The size of the input
+	 * @throws IllegalArgumentException If a symbol of fd has no code
+	 */
+	public CompressionStats(FrequencyDistribution fd, CodeTable table, long originalBytes) {
+		if (fd == null || table == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		alphabetSize = fd.size();
+		symbols = fd.total();
+		this.originalBytes = originalBytes;
+
+		/* Both are sorted by symbol, so they are walked side by side */
+		int j = 0;
+		for (int i = 0; i < fd.size(); i++) {
+			while (j < table.size() && table.getSymbol(j) < fd.getSymbol(i))
+				j++;
+			if (j == table.size() || table.getSymbol(j) != fd.getSymbol(i))
+				throw new IllegalArgumentException("Symbol " + fd.getSymbol(i) + " has no code");
+			long frequency = fd.getFrequency(i);
+			encodedBits += frequency * table.getLength(j);
+			double p = (double) frequency / symbols;
+			entropy -= p * Math.log(p) / Math.log(2);
+		}
+	}
+
+	public int getAlphabetSize() {
+		return alphabetSize;
+	}
+
+	/**
+	 * Return the amount of symbols in the input.
+	 *
+	 * @return The sum of all the frequencies
+	 */
+	public long getSymbols() {
+		return symbols;
+	}
+
+	public long getOriginalBytes() {
+		return originalBytes;
+	}
+
+	/**
+	 * Return the size of the payload, without any header.
+	 *
+	 * @return The sum of frequency times code length of every symbol
+	 */
+	public long getEncodedBits() {
+		return encodedBits;
+	}
+
+	public long getEncodedBytes() {
+		return (encodedBits + 7) / 8;
+	}
+
+	/**
+	 * Return the average amount of bits used to encode a symbol.
+	 *
+	 * @return The encoded bits divided by the amount of symbols
+	 */
+	public double getAverageLength() {
+		return symbols == 0 ? 0 : (double) encodedBits / symbols;
+	}
+
+	/**
+	 * Return the Shannon entropy of the distribution, the least average amount of
+	 * bits per symbol any code for these frequencies can reach.
+	 *
+	 * @return The entropy in bits per symbol
+	 */
+	public double getEntropy() {
+		return entropy;
+	}
+
+	/**
+	 * Return how close the code is to the entropy: 1 is a perfect code, and a
+	 * Huffman code is always above entropy / (entropy + 1).
+	 *
+	 * @return The entropy divided by the average code length
+	 */
+	public double getEfficiency() {
+		return getAverageLength() == 0 ? 1 : entropy / getAverageLength();
+	}
+
+	/**
+	 * Return the space saved, in percent of the original size.
+	 *
+	 * @return 100 minus the encoded size as a percent of the original
+	 */
+	public double getSavings() {
+		return originalBytes == 0 ? 0 : 100 - 100.0 * getEncodedBytes() / originalBytes;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Alphabet size: %d symbols%n" + "Input: %d symbols, %d bytes%n"
+				+ "Encoded: %d bits, %d bytes%n" + "Average code length: %.4f bits/symbol%n"
+				+ "Entropy: %.4f bits/symbol%n" + "Efficiency: %.2f%%%n" + "Savings: %.2f%%", alphabetSize, symbols,
+				originalBytes, encodedBits, getEncodedBytes(), getAverageLength(), entropy, 100 * getEfficiency(),
+				getSavings());
+	}
+
+	/* The size of the code points in UTF-8, from their frequencies */
+	private static long utf8Bytes(FrequencyDistribution fd) {
+		long bytes = 0;
+		for (int i = 0; i < fd.size(); i++) {
+			int c = fd.getSymbol(i);
+			int size = c < 0x80 ? 1 : c < 0x800 ? 2 : c < 0x10000 ? 3 : 4;
+			bytes += size * fd.getFrequency(i);
+		}
+		return bytes;
+	}
+
+}
@@ -0,0 +1,140 @@
+package utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The output of BlockEncoder: the packed bits of every block, one after the
+ * other, and an index telling where each block starts, how many bits it has
+ * and how many symbols it holds. Every block starts on a byte boundary, so
+ * with the index any block can be decoded on its own, and all of them at once.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class EncodedBlocks {
+
+	// private fields
+	private byte[] payload;
+	private long[] bitOffsets; // where each block starts, always a multiple of 8
+	private long[] bitLengths;
+	private int[] symbolCounts;
+
+	/**
+	 * The arrays are kept, not copied, so the caller must not modify them.
+	 *
+	 * @param payload      The packed bits of all the blocks
+	 * @param bitOffsets   Bit of the payload where each block starts
+	 * @param bitLengths   Amount of bits of each block, without the padding
+	 * @param symbolCounts Amount of symbols encoded in each block
+	 */
+	public EncodedBlocks(byte[] payload, long[] bitOffsets, long[] bitLengths, int[] symbolCounts) {
+		if (payload == null || bitOffsets == null || bitLengths == null || symbolCounts == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		if (bitOffsets.length != bitLengths.length || bitOffsets.length != symbolCounts.length)
+			throw new IllegalArgumentException("Index arrays must have the same length");
+		this.payload = payload;
+		this.bitOffsets = bitOffsets;
+		this.bitLengths = bitLengths;
+		this.symbolCounts = symbolCounts;
+	}
+
+	public int blockCount() {
+		return bitOffsets.length;
+	}
+
+	public byte[] getPayload() {
+		return payload;
+	}
+
+	public long getBitOffset(int block) {
+		return bitOffsets[block];
+	}
+
+	public long getBitLength(int block) {
+		return bitLengths[block];
+	}
+
+	public int getSymbolCount(int block) {
+		return symbolCounts[block];
+	}
+
+	/**
+	 * Return the total amount of symbols in all the blocks.
+	 *
+	 * @return The length of the input that was encoded
+	 */
+	public long totalSymbols() {
+		long total = 0;
+		for (int i = 0; i < symbolCounts.length; i++)
+			total += symbolCounts[i];
+		return total;
+	}
+
+	/**
+	 * Return a reader positioned at the first bit of a block.
+	 *
+	 * @param block Index of the block
+	 * @return A reader over that block alone
+	 */
+	public BitReader reader(int block) {
+		int start = (int) (bitOffsets[block] / 8);
+		int end = (int) ((bitOffsets[block] + bitLengths[block] + 7) / 8);
+		return new BitReader(payload, start, end - start);
+	}
+
+	/**
+	 * Writes the index followed by the payload. The offsets are not written,
+	 * since they follow from the lengths.
+	 *
+	 * @param out Destination of the blocks, which is not closed
+	 * @throws IOException If writing fails
+	 */
+	public void write(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(blockCount());
+		for (int i = 0; i < blockCount(); i++) {
+			data.writeInt(symbolCounts[i]);
+			data.writeLong(bitLengths[i]);
+		}
+		data.writeInt(payload.length);
+		data.write(payload);
+		data.flush();
+	}
+
+	/**
+	 * Reads blocks written by write.
+	 *
+	 * @param in Source of the blocks, which is not closed
+	 * @return The blocks and their index
+	 * @throws IOException If reading fails or the data is not valid
+	 */
+	public static EncodedBlocks read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		int count = data.readInt();
+		if (count < 0)
+			throw new IOException("Invalid block count " + count);
+		long[] bitOffsets = new long[count];
+		long[] bitLengths = new long[count];
+		int[] symbolCounts = new int[count];
+		long offset = 0;
+		for (int i = 0; i < count; i++) {
+			symbolCounts[i] = data.readInt();
+			bitLengths[i] = data.readLong();
+			if (symbolCounts[i] < 0 || bitLengths[i] < 0)
+				throw new IOException("Invalid index of block " + i);
+			bitOffsets[i] = offset;
+			offset += (bitLengths[i] + 7) / 8 * 8;
+		}
+		int length = data.readInt();
+		if (length != offset / 8)
+			throw new IOException("The payload does not match the index");
+		byte[] payload = new byte[length];
+		data.readFully(payload);
+		return new EncodedBlocks(payload, bitOffsets, bitLengths, symbolCounts);
+	}
+
+}
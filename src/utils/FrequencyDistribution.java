@@ -0,0 +1,115 @@
+package utils;
+
+import map.HashTableSC;
+import map.Map;
+import map.SimpleHashFunction;
+
+/**
+ * The result of counting an input: every distinct symbol together with the
+ * amount of times it appeared, stored in two parallel arrays sorted by symbol.
+ * Instances are created by FrequencyTable and never change afterwards.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class FrequencyDistribution {
+
+	// private fields
+	private int[] symbols;
+	private long[] frequencies;
+	private long total;
+
+	/**
+	 * The arrays are kept, not copied, so the caller must not modify them.
+	 *
+	 * @param symbols     Distinct symbols in increasing order
+	 * @param frequencies Frequency of the symbol at the same index
+	 */
+	public FrequencyDistribution(int[] symbols, long[] frequencies) {
+		if (symbols == null || frequencies == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		if (symbols.length != frequencies.length)
+			throw new IllegalArgumentException("Symbols and frequencies must have the same length");
+		this.symbols = symbols;
+		this.frequencies = frequencies;
+		for (int i = 0; i < frequencies.length; i++)
+			total += frequencies[i];
+	}
+
+	/**
+	 * Return the amount of distinct symbols.
+	 *
+	 * @return The size of the alphabet
+	 */
+	public int size() {
+		return symbols.length;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public int getSymbol(int index) {
+		return symbols[index];
+	}
+
+	public long getFrequency(int index) {
+		return frequencies[index];
+	}
+
+	/**
+	 * Return the symbol at an index as text, interpreting it as a Unicode code
+	 * point. This is the same string compute_fd uses as a key.
+	 *
+	 * @param index Index of the symbol
+	 * @return A string holding just that code point
+	 */
+	public String getSymbolText(int index) {
+		return new String(Character.toChars(symbols[index]));
+	}
+
+	/**
+	 * Return the sum of all the frequencies, which is the length of the input.
+	 *
+	 * @return The amount of symbols that were counted
+	 */
+	public long total() {
+		return total;
+	}
+
+	/**
+	 * Returns the index of a symbol, or -1 if it never appeared.
+	 *
+	 * @param symbol The symbol to search for
+	 * @return Its index in this distribution, or -1
+	 */
+	public int indexOf(int symbol) {
+		int first = 0, last = symbols.length - 1;
+		while (first <= last) {
+			int mid = (first + last) >>> 1;
+			if (symbols[mid] < symbol)
+				first = mid + 1;
+			else if (symbols[mid] > symbol)
+				last = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	/**
+	 * Copies the distribution into the kind of map compute_fd returns, with every
+	 * symbol as text mapping to its frequency.
+	 *
+	 * @return A map with the symbols mapping to their frequencies
+	 * @throws ArithmeticException If a frequency does not fit in an Integer
+	 */
+	public Map<String, Integer> toMap() {
+		Map<String, Integer> map = new HashTableSC<String, Integer>(Math.max(size(), 1),
+				new SimpleHashFunction<String>());
+		for (int i = 0; i < size(); i++)
+			map.put(getSymbolText(i), Math.toIntExact(frequencies[i]));
+		return map;
+	}
+
+}
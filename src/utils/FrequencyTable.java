@@ -0,0 +1,355 @@
+package utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Counts how many times each symbol appears in an input. Symbols are non
+ * negative integers (Unicode code points when counting text). The common ones
+ * are counted directly in a dense array indexed by the symbol, so counting a
+ * character is a single array increment with no allocation at all, while the
+ * rare symbols beyond the dense range go to a small open addressing table.
+ *
+ * Once the input has been consumed, toDistribution returns the compact result
+ * that the Huffman tree is built from.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class FrequencyTable {
+
+	/* Covers ASCII, Latin, Greek, Cyrillic, Hebrew and Arabic */
+	public static final int DEFAULT_DENSE_SIZE = 0x800;
+
+	private static final int EMPTY = -1; // Symbols are never negative
+	private static final int INITIAL_SPARSE_SIZE = 16; // Must be a power of two
+
+	// private fields
+	private long[] dense;
+	private int denseCharLimit; // chars below this value can skip the surrogate checks
+	private int[] sparseSymbols;
+	private long[] sparseCounts;
+	private int sparseSize;
+	private char pendingHigh; // high surrogate at the end of a chunk, waiting for its pair
+	private boolean hasPending;
+
+	public FrequencyTable() {
+		this(DEFAULT_DENSE_SIZE);
+	}
+
+	public FrequencyTable(int denseSize) {
+		if (denseSize < 1)
+			throw new IllegalArgumentException("Dense size must be at least 1");
+		dense = new long[denseSize];
+		denseCharLimit = Math.min(denseSize, Character.MIN_SURROGATE);
+		clearSparse();
+	}
+
+	/**
+	 * Adds one occurrence of a symbol.
+	 *
+	 * @param symbol The symbol that was seen
+	 */
+	public void add(int symbol) {
+		if (symbol >= 0 && symbol < dense.length)
+			dense[symbol]++;
+		else
+			addSparse(symbol, 1);
+	}
+
+	/**
+	 * Adds several occurrences of a symbol at once.
+	 *
+	 * @param symbol The symbol that was seen
+	 * @param count  How many times it was seen
+	 */
+	public void add(int symbol, long count) {
+		if (count < 0)
+			throw new IllegalArgumentException("Count cannot be negative");
+		if (symbol >= 0 && symbol < dense.length)
+			dense[symbol] += count;
+		else
+			addSparse(symbol, count);
+	}
+
+	/**
+	 * Counts the code points in a portion of a char array. A surrogate pair split
+	 * between two consecutive calls is still counted as a single code point, so
+	 * an input may be fed one chunk at a time.
+	 *
+	 * @param buffer Characters to count
+	 * @param offset Index of the first character to count
+	 * @param length Amount of characters to count
+	 */
+	public void addChars(char[] buffer, int offset, int length) {
+		int end = offset + length;
+		int i = offset;
+		if (hasPending && i < end) {
+			hasPending = false;
+			if (Character.isLowSurrogate(buffer[i]))
+				add(Character.toCodePoint(pendingHigh, buffer[i++]));
+			else
+				add(pendingHigh);
+		}
+		while (i < end) {
+			char c = buffer[i++];
+			if (c < denseCharLimit)
+				dense[c]++; // The hot path: no surrogate checks and no allocation
+			else if (!Character.isHighSurrogate(c))
+				add(c);
+			else if (i < end) {
+				if (Character.isLowSurrogate(buffer[i]))
+					add(Character.toCodePoint(c, buffer[i++]));
+				else
+					add(c); // Unpaired high surrogate counts as a symbol of its own
+			} else {
+				pendingHigh = c;
+				hasPending = true;
+			}
+		}
+	}
+
+	/**
+	 * Counts the code points in a string.
+	 *
+	 * @param input Characters to count
+	 */
+	public void addChars(CharSequence input) {
+		addChars(input, 0, input.length());
+	}
+
+	/**
+	 * Counts the code points in a portion of a string.
+	 *
+	 * @param input Characters to count
+	 * @param start Index of the first character to count
+	 * @param end   Index after the last character to count
+	 */
+	public void addChars(CharSequence input, int start, int end) {
+		char[] buffer = new char[Math.min(end - start, HuffManTree.CHUNK_SIZE)];
+		for (; start < end; start += buffer.length) {
+			int count = Math.min(buffer.length, end - start);
+			if (input instanceof String)
+				((String) input).getChars(start, start + count, buffer, 0);
+			else
+				for (int i = 0; i < count; i++)
+					buffer[i] = input.charAt(start + i);
+			addChars(buffer, 0, count);
+		}
+	}
+
+	/**
+	 * Counts the bytes between the position and the limit of a buffer, every
+	 * byte being a symbol between 0 and 255. The position of the buffer is not
+	 * changed.
+	 *
+	 * @param buffer Bytes to count
+	 */
+	public void addBytes(ByteBuffer buffer) {
+		if (dense.length < 256) {
+			for (int i = buffer.position(); i < buffer.limit(); i++)
+				add(buffer.get(i) & 0xFF);
+		} else if (buffer.hasArray()) {
+			byte[] array = buffer.array();
+			int end = buffer.arrayOffset() + buffer.limit();
+			for (int i = buffer.arrayOffset() + buffer.position(); i < end; i++)
+				dense[array[i] & 0xFF]++;
+		} else {
+			for (int i = buffer.position(); i < buffer.limit(); i++)
+				dense[buffer.get(i) & 0xFF]++;
+		}
+	}
+
+	/**
+	 * Adds the counts of another table to this one, as if this table had also
+	 * seen the input of the other one.
+	 *
+	 * @param other The table to add
+	 */
+	public void merge(FrequencyTable other) {
+		other.flushPending();
+		int shared = Math.min(dense.length, other.dense.length);
+		for (int i = 0; i < shared; i++)
+			dense[i] += other.dense[i];
+		for (int i = shared; i < other.dense.length; i++)
+			if (other.dense[i] != 0)
+				add(i, other.dense[i]);
+		for (int i = 0; i < other.sparseSymbols.length; i++)
+			if (other.sparseSymbols[i] != EMPTY)
+				add(other.sparseSymbols[i], other.sparseCounts[i]);
+	}
+
+	/**
+	 * Return how many times a symbol has been seen.
+	 *
+	 * @param symbol The symbol to look for
+	 * @return Its frequency, which is 0 if it was never seen
+	 */
+	public long get(int symbol) {
+		flushPending();
+		if (symbol >= 0 && symbol < dense.length)
+			return dense[symbol];
+		int slot = findSlot(symbol);
+		return sparseSymbols[slot] == EMPTY ? 0 : sparseCounts[slot];
+	}
+
+	/**
+	 * Return the total amount of symbols that have been counted.
+	 *
+	 * @return The sum of all frequencies
+	 */
+	public long total() {
+		flushPending();
+		long total = 0;
+		for (int i = 0; i < dense.length; i++)
+			total += dense[i];
+		for (int i = 0; i < sparseSymbols.length; i++)
+			if (sparseSymbols[i] != EMPTY)
+				total += sparseCounts[i];
+		return total;
+	}
+
+	/**
+	 * Forget every count, so the table can be reused for another input.
+	 */
+	public void clear() {
+		for (int i = 0; i < dense.length; i++)
+			dense[i] = 0;
+		clearSparse();
+		hasPending = false;
+	}
+
+	/**
+	 * Return the symbols seen so far together with their frequencies. Symbols
+	 * that were never seen are left out.
+	 *
+	 * @return The frequency distribution, sorted by symbol
+	 */
+	public FrequencyDistribution toDistribution() {
+		flushPending();
+		int distinct = sparseSize;
+		for (int i = 0; i < dense.length; i++)
+			if (dense[i] != 0)
+				distinct++;
+
+		int[] symbols = new int[distinct];
+		long[] frequencies = new long[distinct];
+		int n = 0;
+		for (int i = 0; i < dense.length; i++)
+			if (dense[i] != 0) {
+				symbols[n] = i;
+				frequencies[n++] = dense[i];
+			}
+		/* Every sparse symbol is bigger than the dense ones */
+		int firstSparse = n;
+		for (int i = 0; i < sparseSymbols.length; i++)
+			if (sparseSymbols[i] != EMPTY) {
+				symbols[n] = sparseSymbols[i];
+				frequencies[n++] = sparseCounts[i];
+			}
+		sortSparse(symbols, frequencies, firstSparse, n);
+		return new FrequencyDistribution(symbols, frequencies);
+	}
+
+	/* A high surrogate left at the very end of the input is a symbol of its own */
+	private void flushPending() {
+		if (hasPending) {
+			hasPending = false;
+			add(pendingHigh);
+		}
+	}
+
+	private void clearSparse() {
+		sparseSymbols = new int[INITIAL_SPARSE_SIZE];
+		sparseCounts = new long[INITIAL_SPARSE_SIZE];
+		for (int i = 0; i < INITIAL_SPARSE_SIZE; i++)
+			sparseSymbols[i] = EMPTY;
+		sparseSize = 0;
+	}
+
+	/* Linear probing over a power of two table, kept at most half full */
+	private int findSlot(int symbol) {
+		int mask = sparseSymbols.length - 1;
+		int h = symbol * 0x9E3779B9;
+		int slot = (h ^ (h >>> 16)) & mask;
+		while (sparseSymbols[slot] != EMPTY && sparseSymbols[slot] != symbol)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private void addSparse(int symbol, long count) {
+		if (symbol < 0)
+			throw new IllegalArgumentException("Symbol cannot be negative");
+		int slot = findSlot(symbol);
+		if (sparseSymbols[slot] == EMPTY) {
+			if (2 * (sparseSize + 1) > sparseSymbols.length) {
+				growSparse();
+				slot = findSlot(symbol);
+			}
+			sparseSymbols[slot] = symbol;
+			sparseSize++;
+		}
+		sparseCounts[slot] += count;
+	}
+
+	private void growSparse() {
+		int[] oldSymbols = sparseSymbols;
+		long[] oldCounts = sparseCounts;
+		sparseSymbols = new int[2 * oldSymbols.length];
+		sparseCounts = new long[2 * oldSymbols.length];
+		for (int i = 0; i < sparseSymbols.length; i++)
+			sparseSymbols[i] = EMPTY;
+		for (int i = 0; i < oldSymbols.length; i++)
+			if (oldSymbols[i] != EMPTY) {
+				int slot = findSlot(oldSymbols[i]);
+				sparseSymbols[slot] = oldSymbols[i];
+				sparseCounts[slot] = oldCounts[i];
+			}
+	}
+
+	/* Insertion sort is enough for the handful of rare symbols, heapsort otherwise */
+	private static void sortSparse(int[] symbols, long[] frequencies, int first, int end) {
+		if (end - first <= 32) {
+			for (int i = first + 1; i < end; i++) {
+				int s = symbols[i];
+				long f = frequencies[i];
+				int j = i - 1;
+				for (; j >= first && symbols[j] > s; j--) {
+					symbols[j + 1] = symbols[j];
+					frequencies[j + 1] = frequencies[j];
+				}
+				symbols[j + 1] = s;
+				frequencies[j + 1] = f;
+			}
+			return;
+		}
+		int n = end - first;
+		for (int i = n / 2 - 1; i >= 0; i--)
+			siftDown(symbols, frequencies, first, i, n);
+		for (int last = n - 1; last > 0; last--) {
+			swap(symbols, frequencies, first, first + last);
+			siftDown(symbols, frequencies, first, 0, last);
+		}
+	}
+
+	private static void siftDown(int[] symbols, long[] frequencies, int first, int i, int n) {
+		while (2 * i + 1 < n) {
+			int child = 2 * i + 1;
+			if (child + 1 < n && symbols[first + child + 1] > symbols[first + child])
+				child++;
+			if (symbols[first + i] >= symbols[first + child])
+				return;
+			swap(symbols, frequencies, first + i, first + child);
+			i = child;
+		}
+	}
+
+	private static void swap(int[] symbols, long[] frequencies, int i, int j) {
+		int s = symbols[i];
+		symbols[i] = symbols[j];
+		symbols[j] = s;
+		long f = frequencies[i];
+		frequencies[i] = frequencies[j];
+		frequencies[j] = f;
+	}
+
+}
@@ -0,0 +1,474 @@
+package utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Reads and writes the compressed file format. A compressed file is
+ * self-describing: it holds everything needed to get the original file back.
+ *
+ * <pre>
+ * magic            4 bytes   "HUF1"
+ * version          1 byte    VERSION
+ * alphabet         1 byte    BYTES or TOKENS
+ * flags            1 byte    BLOCKS if the payload is split into blocks,
+ *                            ADAPTIVE if it is adaptive Huffman code,
+ *                            CODEBOOK if the code is a trained Codebook
+ * original length  8 bytes   size of the original file, or -1 if ADAPTIVE
+ * code table       varint    amount of symbols, then for each one, in
+ *                            increasing order, the difference with the previous
+ *                            symbol (varint) and its code length (1 byte)
+ * codebook id      varint    only for CODEBOOK
+ * dictionary       varint    only for TOKENS: the amount of tokens, then the
+ *                            length (varint) and the bytes of every token, in
+ *                            the order of their ids
+ * payload          either    the payload length in bits (8 bytes) and the
+ *                            packed bits of the canonical code of every byte
+ *                            or token; a CODEBOOK file has the packed bits
+ *                            alone, since it is never counted,
+ *                  or        the amount of block groups (4 bytes), and for each
+ *                            group an EncodedBlocks with its index
+ *                  or        the bits written by AdaptiveHuffman, which end with
+ *                            its own END_OF_STREAM
+ * </pre>
+ *
+ * Only the code lengths are stored, since the codes are canonical. An adaptive
+ * file has no code table (0 symbols), since the code is rebuilt while decoding,
+ * and neither does a CODEBOOK file, since the decoder already has the code.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class HuffFile {
+
+	public static final int MAGIC = 0x48554631; // "HUF1"
+	public static final int VERSION = 1;
+
+	/* Alphabets */
+	public static final int BYTES = 0;
+	public static final int TOKENS = 1;
+
+	/* Symbols of the BYTES alphabet; TOKENS has up to Tokenizer.MAX_TOKENS */
+	public static final int BYTE_VALUES = 256;
+
+	/* Flags */
+	public static final int BLOCKS = 1;
+	public static final int ADAPTIVE = 2;
+	public static final int CODEBOOK = 4;
+
+	/* Keeps the decoding tables small without costing any real compression */
+	public static final int MAX_CODE_LENGTH = 32;
+
+	/* Entries of a code table or dictionary allocated before any is read */
+	private static final int INITIAL_TABLE_SIZE = 1024;
+
+	/**
+	 * Compresses a file.
+	 *
+	 * @param inputPath  Location of the file to compress
+	 * @param outputPath Location of the compressed file, which is overwritten
+	 * @param blocks     Whether to encode blocks concurrently
+	 * @return The size of the compressed file
+	 * @throws IOException If reading or writing fails
+	 */
+	public static long compress(String inputPath, String outputPath, boolean blocks) throws IOException {
+		return compress(inputPath, outputPath, blocks, null);
+	}
+
+	/**
+	 * Compresses a file, reusing a code from a cache when one is good enough for
+	 * it, which saves building the code of every one of many similar files.
+	 *
+	 * @param inputPath  Location of the file to compress
+	 * @param outputPath Location of the compressed file, which is overwritten
+	 * @param blocks     Whether to encode blocks concurrently
+	 * @param cache      Codes of previous files, or null to always build a new one
+	 * @return The size of the compressed file
+	 * @throws IOException If reading or writing fails
+	 */
+	public static long compress(String inputPath, String outputPath, boolean blocks, CodeTableCache cache)
+			throws IOException {
+		MappedInput in = new MappedInput(inputPath);
+		PipelineMetrics.Span span = PipelineMetrics.begin(PipelineMetrics.Stage.COUNT);
+		FrequencyDistribution fd = in.count(new ParallelFrequencyCounter());
+		span.end(in.size(), in.size());
+		CodeTable table = cache == null ? HuffManTree.huffman_code_limited(fd, MAX_CODE_LENGTH)
+				: cache.get(fd).getTable();
+
+		CountingOutputStream counter = new CountingOutputStream(
+				new BufferedOutputStream(new FileOutputStream(outputPath), HuffManTree.CHUNK_SIZE));
+		try {
+			DataOutputStream out = new DataOutputStream(counter);
+			writeHeader(out, BYTES, blocks ? BLOCKS : 0, in.size(), table);
+			if (blocks) {
+				span = PipelineMetrics.begin(PipelineMetrics.Stage.ENCODE);
+				BlockEncoder encoder = new BlockEncoder();
+				out.writeInt(in.segmentCount());
+				for (int i = 0; i < in.segmentCount(); i++)
+					encoder.encode(table, in.segment(i)).write(out);
+				span.end(in.size(), in.size());
+			} else {
+				out.writeLong(new CompressionStats(fd, table, in.size()).getEncodedBits());
+				BitWriter bits = new BitWriter(out);
+				HuffManTree.encode(table, in, bits);
+				bits.flush();
+			}
+			out.flush();
+		} finally {
+			counter.close();
+		}
+		return counter.count;
+	}
+
+	/**
+	 * Compresses a file using tokens, such as words, as the symbols. The
+	 * dictionary of tokens is stored after the code table.
+	 *
+	 * @param inputPath  Location of the file to compress
+	 * @param outputPath Location of the compressed file, which is overwritten
+	 * @param mode       How the file is split into tokens
+	 * @return The size of the compressed file
+	 * @throws IOException If reading or writing fails, or the file has more
+	 *                     than Tokenizer.MAX_TOKENS distinct tokens
+	 */
+	public static long compressTokens(String inputPath, String outputPath, Tokenizer.Mode mode)
+			throws IOException {
+		MappedInput in = new MappedInput(inputPath);
+		Tokenizer tokenizer = new Tokenizer(mode);
+		FrequencyDistribution fd;
+		try {
+			fd = HuffManTree.compute_distribution(in, tokenizer);
+		} catch (IllegalStateException e) {
+			throw new IOException("Cannot compress " + inputPath + " with tokens", e);
+		}
+		CodeTable table = HuffManTree.huffman_code_limited(fd, MAX_CODE_LENGTH);
+
+		CountingOutputStream counter = new CountingOutputStream(
+				new BufferedOutputStream(new FileOutputStream(outputPath), HuffManTree.CHUNK_SIZE));
+		try {
+			DataOutputStream out = new DataOutputStream(counter);
+			writeHeader(out, TOKENS, 0, in.size(), table);
+			writeVarLong(out, tokenizer.size());
+			for (int i = 0; i < tokenizer.size(); i++) {
+				byte[] token = tokenizer.getTokenBytes(i);
+				writeVarLong(out, token.length);
+				out.write(token);
+			}
+			out.writeLong(new CompressionStats(fd, table, in.size()).getEncodedBits());
+			BitWriter bits = new BitWriter(out);
+			HuffManTree.encode(table, in, tokenizer, bits);
+			bits.flush();
+			out.flush();
+		} finally {
+			counter.close();
+		}
+		return counter.count;
+	}
+
+	/**
+	 * Compresses a file with a trained codebook, so neither counting nor building
+	 * a code is needed and only the id of the codebook is stored.
+	 *
+	 * @param inputPath  Location of the file to compress
+	 * @param outputPath Location of the compressed file, which is overwritten
+	 * @param codebook   The code of every byte value
+	 * @return The size of the compressed file
+	 * @throws IOException If reading or writing fails
+	 */
+	public static long compress(String inputPath, String outputPath, Codebook codebook) throws IOException {
+		MappedInput in = new MappedInput(inputPath);
+		CountingOutputStream counter = new CountingOutputStream(
+				new BufferedOutputStream(new FileOutputStream(outputPath), HuffManTree.CHUNK_SIZE));
+		try {
+			DataOutputStream out = new DataOutputStream(counter);
+			writeHeader(out, BYTES, CODEBOOK, in.size(), null);
+			writeVarLong(out, codebook.getId());
+			BitWriter bits = new BitWriter(out);
+			HuffManTree.encode(codebook.getTable(), in, bits);
+			bits.flush();
+			out.flush();
+		} finally {
+			counter.close();
+		}
+		return counter.count;
+	}
+
+	/**
+	 * Compresses a stream in a single pass with adaptive Huffman code, so that
+	 * the input does not need to be a file, nor to have an end known beforehand.
+	 *
+	 * @param in  Source of the bytes, which is not closed
+	 * @param out Destination of the compressed file, which is not closed
+	 * @return The amount of bytes read
+	 * @throws IOException If reading or writing fails
+	 */
+	public static long compressAdaptive(InputStream in, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		writeHeader(data, BYTES, ADAPTIVE, -1, null);
+		data.flush();
+		return AdaptiveHuffman.compress(in, out);
+	}
+
+	/**
+	 * Decompresses a file written by compress or compressAdaptive.
+	 *
+	 * @param inputPath  Location of the compressed file
+	 * @param outputPath Location of the original file, which is overwritten
+	 * @return The size of the original file
+	 * @throws IOException If reading or writing fails, or the file is not valid
+	 */
+	public static long decompress(String inputPath, String outputPath) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(inputPath), HuffManTree.CHUNK_SIZE);
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(outputPath), HuffManTree.CHUNK_SIZE);
+		try {
+			return decompress(in, out);
+		} finally {
+			in.close();
+			out.close();
+		}
+	}
+
+	/**
+	 * Decompresses a stream written by compress or compressAdaptive.
+	 *
+	 * @param file Source of the compressed file, which is not closed
+	 * @param out  Destination of the original bytes, which is not closed
+	 * @return The size of the original file
+	 * @throws IOException If reading or writing fails, or the file is not valid
+	 */
+	public static long decompress(InputStream file, OutputStream out) throws IOException {
+		return decompress(file, out, null);
+	}
+
+	/**
+	 * Decompresses a stream, which may have been compressed with a codebook.
+	 *
+	 * @param file      Source of the compressed file, which is not closed
+	 * @param out       Destination of the original bytes, which is not closed
+	 * @param codebooks The codebooks the file may refer to, or null if none
+	 * @return The size of the original file
+	 * @throws IOException If reading or writing fails, the file is not valid or
+	 *                     its codebook is not known
+	 */
+	public static long decompress(InputStream file, OutputStream out, CodebookRegistry codebooks)
+			throws IOException {
+		PipelineMetrics.Span span = PipelineMetrics.begin(PipelineMetrics.Stage.DECODE);
+		try {
+			DataInputStream in = new DataInputStream(file);
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not a compressed file");
+			int version = in.readUnsignedByte();
+			if (version != VERSION)
+				throw new IOException("Unsupported version " + version);
+			int alphabet = in.readUnsignedByte();
+			if (alphabet != BYTES && alphabet != TOKENS)
+				throw new IOException("Unsupported alphabet " + alphabet);
+			int flags = in.readUnsignedByte();
+			long length = in.readLong();
+			if ((flags & ADAPTIVE) != 0 ? length != -1 : length < 0)
+				throw new IOException("Invalid length " + length);
+			CodeTable table = readCodeTable(in, alphabet == TOKENS ? Tokenizer.MAX_TOKENS : BYTE_VALUES);
+
+			if ((flags & CODEBOOK) != 0) {
+				long id = readVarLong(in);
+				Codebook codebook = codebooks == null || id > Integer.MAX_VALUE ? null : codebooks.get((int) id);
+				if (codebook == null)
+					throw new IOException("Unknown codebook " + id);
+				HuffmanDecoder decoder = codebook.getDecoder();
+				BitReader bits = new BitReader(in);
+				for (long i = 0; i < length; i++)
+					out.write(decoder.decode(bits));
+			} else if (alphabet == TOKENS) {
+				byte[][] tokens = readDictionary(in);
+				in.readLong();
+				HuffmanDecoder decoder = new HuffmanDecoder(table);
+				BitReader bits = new BitReader(in);
+				for (long written = 0; written < length;) {
+					int token = decoder.decode(bits);
+					if (token >= tokens.length)
+						throw new IOException("Invalid token " + token);
+					out.write(tokens[token]);
+					written += tokens[token].length;
+				}
+			} else if ((flags & ADAPTIVE) != 0) {
+				length = AdaptiveHuffman.decompress(in, out);
+			} else if ((flags & BLOCKS) != 0) {
+				BlockEncoder decoder = new BlockEncoder();
+				int groups = in.readInt();
+				long written = 0;
+				for (int i = 0; i < groups; i++)
+					written += decoder.decodeBytes(table, EncodedBlocks.read(in), out);
+				if (written != length)
+					throw new IOException("The blocks hold " + written + " bytes instead of " + length);
+			} else {
+				in.readLong(); // The payload length is only needed to skip it
+				HuffmanDecoder decoder = new HuffmanDecoder(table);
+				BitReader bits = new BitReader(in);
+				for (long i = 0; i < length; i++)
+					out.write(decoder.decode(bits));
+			}
+			out.flush();
+			span.end(length, length);
+			return length;
+		} catch (IllegalStateException e) {
+			throw new IOException("Corrupt compressed file", e);
+		}
+	}
+
+	/**
+	 * Writes everything that comes before the payload.
+	 *
+	 * @param out      Destination of the header
+	 * @param alphabet What the symbols are
+	 * @param flags    How the payload is stored
+	 * @param length   Size of the original file
+	 * @param table    The canonical code of every symbol, or null if there is none
+	 * @throws IOException If writing fails
+	 */
+	static void writeHeader(DataOutputStream out, int alphabet, int flags, long length, CodeTable table)
+			throws IOException {
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeByte(alphabet);
+		out.writeByte(flags);
+		out.writeLong(length);
+		writeCodeTable(out, table);
+	}
+
+	/**
+	 * Writes the amount of symbols of a code, then for each one the difference
+	 * with the previous symbol and the length of its code.
+	 *
+	 * @param out   Destination of the code table
+	 * @param table The canonical code of every symbol, or null if there is none
+	 * @throws IOException If writing fails
+	 */
+	static void writeCodeTable(DataOutputStream out, CodeTable table) throws IOException {
+		if (table == null) {
+			writeVarLong(out, 0);
+			return;
+		}
+		writeVarLong(out, table.size());
+		int previous = 0;
+		for (int i = 0; i < table.size(); i++) {
+			writeVarLong(out, table.getSymbol(i) - previous);
+			out.writeByte(table.getLength(i));
+			previous = table.getSymbol(i);
+		}
+	}
+
+	/**
+	 * Reads the code table written by writeCodeTable and rebuilds the codes. The
+	 * size in the header is only trusted up to the size of the alphabet, and the
+	 * arrays grow as entries are actually read, so a corrupt header cannot make
+	 * the reader allocate more than the file holds.
+	 *
+	 * @param in         Source of the code table
+	 * @param maxSymbols Size of the alphabet; every symbol must be below it
+	 * @return The canonical code of every symbol
+	 * @throws IOException If reading fails or the table is not valid
+	 */
+	static CodeTable readCodeTable(DataInputStream in, int maxSymbols) throws IOException {
+		long size = readVarLong(in);
+		if (size < 0 || size > maxSymbols)
+			throw new IOException("Invalid code table size " + size);
+		int[] symbols = new int[(int) Math.min(size, INITIAL_TABLE_SIZE)];
+		int[] lengths = new int[symbols.length];
+		long symbol = 0;
+		for (int i = 0; i < size; i++) {
+			symbol += readVarLong(in);
+			if (symbol >= maxSymbols)
+				throw new IOException("Invalid symbol " + symbol);
+			if (i == symbols.length) {
+				symbols = Arrays.copyOf(symbols, (int) Math.min(size, 2L * i));
+				lengths = Arrays.copyOf(lengths, symbols.length);
+			}
+			symbols[i] = (int) symbol;
+			lengths[i] = in.readUnsignedByte();
+		}
+		try {
+			return CodeTable.canonical(symbols, lengths);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid code table", e);
+		}
+	}
+
+	/* The bytes of every token, indexed by id; grown as they are read, like the code table */
+	private static byte[][] readDictionary(DataInputStream in) throws IOException {
+		long size = readVarLong(in);
+		if (size < 0 || size > Tokenizer.MAX_TOKENS)
+			throw new IOException("Invalid dictionary size " + size);
+		byte[][] tokens = new byte[(int) Math.min(size, INITIAL_TABLE_SIZE)][];
+		for (int i = 0; i < size; i++) {
+			long length = readVarLong(in);
+			if (length < 1 || length > Tokenizer.MAX_TOKEN_LENGTH)
+				throw new IOException("Invalid token length " + length);
+			if (i == tokens.length)
+				tokens = Arrays.copyOf(tokens, (int) Math.min(size, 2L * i));
+			tokens[i] = new byte[(int) length];
+			in.readFully(tokens[i]);
+		}
+		return tokens;
+	}
+
+	/* Seven bits per byte, the high bit telling whether more bytes follow */
+	static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Invalid variable length number");
+	}
+
+	/* Remembers how many bytes went through it, to report the compressed size */
+	private static class CountingOutputStream extends OutputStream {
+		private OutputStream out;
+		private long count;
+
+		public CountingOutputStream(OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+	}
+
+}
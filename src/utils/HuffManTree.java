@@ -1,17 +1,33 @@
 package utils;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.text.DecimalFormat;
+import java.util.Arrays;
+
+import list.ArrayList;
+import list.List;
 
 import map.HashTableSC;
 import map.Map;
 import map.SimpleHashFunction;
+import priorityQueue.BinaryHeap;
+import priorityQueue.PriorityQueue;
 import sortedList.SortedArrayList;
-import sortedList.SortedList;
+import utils.PipelineMetrics.Stage;
 
 /**
  * This class represents what a HuffmanTree is, how it is constructed and the
@@ -22,35 +38,221 @@ import sortedList.SortedList;
  */
 public class HuffManTree {
 
+	/* Amount of characters read from the input file on every pass of the loop */
+	public static final int CHUNK_SIZE = 8192;
+
+	/* Directory where decompress looks for codebooks by default */
+	public static final String CODEBOOK_DIRECTORY = "codebooks";
+
 	public static void main(String[] args) {
+		if (args.length > 0) {
+			int status = run_command(args);
+			print_metrics();
+			System.exit(status);
+		}
 		String loadData = load_data("stringData6.txt");
-		if (loadData == null) {
+		if (loadData == null || loadData.isEmpty()) {
 			System.out.println("The text file cannot be empty.");
 		} else {
 			Map<String, Integer> computeFD = compute_fd(loadData);
 			// uncomment to see the tree
 			BTNode<Integer, String> huffManTree = huffman_tree(computeFD);
 			Map<String, String> huffManCode = huffman_code(huffManTree);
-			String output = encode(huffManCode, loadData);
+			BitWriter output = encode(huffManCode, loadData);
 			process_results(computeFD, huffManCode, loadData, output);
 		}
+		print_metrics();
+	}
 
+	/* Run with -Dhuffman.metrics=true to get the time and memory of every stage */
+	private static void print_metrics() {
+		if (PipelineMetrics.isEnabled())
+			System.err.println(PipelineMetrics.global().toJson());
 	}
 
+	/**
+	 * Runs a command given on the command line:
+	 *
+	 * <pre>
+	 * compress [-blocks | -adaptive | -words | -ngrams | -hybrid] &lt;input&gt; &lt;output&gt;
+	 * decompress &lt;input&gt; &lt;output&gt;
+	 * stats [-words | -ngrams | -hybrid] &lt;input&gt;
+	 * </pre>
+	 *
+	 * The paths are used as given, not inside the inputData folder. With -blocks
+	 * the payload is split into blocks that are encoded and decoded concurrently.
+	 * With -adaptive the input is compressed in a single pass, so it may be a
+	 * stream; for -adaptive and decompress a path of - means the standard input
+	 * or output. With -words, -ngrams or -hybrid the symbols are tokens of the
+	 * input instead of bytes (see Tokenizer). stats only counts the input and
+	 * prints how much it would compress, without encoding it. train builds a
+	 * Codebook from a corpus, which compress -codebook then uses instead of a code
+	 * of its own; decompress finds it among the codebooks of CODEBOOK_DIRECTORY,
+	 * or of the directory given with -codebooks. batch compresses every file of a
+	 * directory tree concurrently (see BatchCompressor), with at most the amount
+	 * given with -threads at once, and with -cache every file shares the codes
+	 * of a CodeTableCache.
+	 *
+	 * @param args the command and its arguments
+	 * @return the exit status, 0 if the command succeeded
+	 */
+	public static int run_command(String[] args) {
+		String option = args.length == 4 ? args[1] : "";
+		int first = args.length == 4 ? 2 : 1;
+		try {
+			if (args[0].equals("compress") && args.length == first + 2 && option.equals("-adaptive")) {
+				InputStream in = open_stream(args[first]);
+				OutputStream out = create_stream(args[first + 1]);
+				try {
+					long original = HuffFile.compressAdaptive(in, out);
+					System.err.println("Original size: " + original + " bytes");
+				} finally {
+					in.close();
+					out.close();
+				}
+				return 0;
+			} else if (args[0].equals("compress") && args.length == first + 2
+					&& (option.isEmpty() || option.equals("-blocks") || token_mode(option) != null)) {
+				long original = new File(args[first]).length();
+				long compressed;
+				if (token_mode(option) != null)
+					compressed = HuffFile.compressTokens(args[first], args[first + 1], token_mode(option));
+				else
+					compressed = HuffFile.compress(args[first], args[first + 1], !option.isEmpty());
+				System.out.println("Original size: " + original + " bytes");
+				System.out.println("Compressed size: " + compressed + " bytes");
+				if (original > 0)
+					System.out.printf("Saved: %.2f%%%n", 100.0 * (original - compressed) / original);
+				return 0;
+			} else if (args[0].equals("compress") && args.length == 5 && args[1].equals("-codebook")) {
+				long original = new File(args[3]).length();
+				long compressed = HuffFile.compress(args[3], args[4], Codebook.load(args[2]));
+				System.out.println("Original size: " + original + " bytes");
+				System.out.println("Compressed size: " + compressed + " bytes");
+				return 0;
+			} else if (args[0].equals("batch") && args.length >= 3) {
+				int concurrency = BatchCompressor.DEFAULT_CONCURRENCY;
+				CodeTableCache cache = null;
+				int i = 1;
+				for (; i < args.length - 2; i++) {
+					if (args[i].equals("-threads") && i + 1 < args.length - 2 && args[i + 1].matches("[1-9]\\d{0,5}"))
+						concurrency = Integer.parseInt(args[++i]);
+					else if (args[i].equals("-cache"))
+						cache = new CodeTableCache();
+					else
+						break;
+				}
+				if (i == args.length - 2) {
+					BatchCompressor.Report report = new BatchCompressor(concurrency, cache).compress(args[i],
+							args[i + 1]);
+					for (String failure : report.getFailures())
+						System.err.println(failure);
+					System.out.println(report);
+					return report.getFailures().isEmpty() ? 0 : 1;
+				}
+			} else if (args[0].equals("train") && args.length >= 4 && args[2].matches("\\d{1,9}")) {
+				Codebook codebook = Codebook.train(Integer.parseInt(args[2]),
+						Arrays.copyOfRange(args, 3, args.length));
+				codebook.save(args[1]);
+				System.out.println("Codebook " + codebook.getId() + " saved to " + args[1]);
+				return 0;
+			} else if (args[0].equals("decompress")
+					&& (args.length == 3 || args.length == 5 && args[1].equals("-codebooks"))) {
+				CodebookRegistry codebooks = CodebookRegistry.load(args.length == 5 ? args[2] : CODEBOOK_DIRECTORY);
+				InputStream in = open_stream(args[args.length - 2]);
+				OutputStream out = create_stream(args[args.length - 1]);
+				try {
+					long original = HuffFile.decompress(in, out, codebooks);
+					System.err.println("Decompressed size: " + original + " bytes");
+				} finally {
+					in.close();
+					out.close();
+				}
+				return 0;
+			} else if (args[0].equals("stats") && (args.length == 2 || args.length == 3 && token_mode(args[1]) != null)) {
+				MappedInput in = new MappedInput(args[args.length - 1]);
+				FrequencyDistribution fd = args.length == 2 ? compute_distribution(in)
+						: compute_distribution(in, new Tokenizer(token_mode(args[1])));
+				process_statistics(fd, huffman_code_limited(fd, HuffFile.MAX_CODE_LENGTH), in.size());
+				return 0;
+			}
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			return 1;
+		}
+		System.err.println("Usage: compress [-blocks | -adaptive | -words | -ngrams | -hybrid] <input> <output>");
+		System.err.println("       compress -codebook <codebook> <input> <output>");
+		System.err.println("       decompress [-codebooks <directory>] <input> <output>");
+		System.err.println("       batch [-threads <n>] [-cache] <input directory> <output directory>");
+		System.err.println("       train <codebook> <id> <corpus>...");
+		System.err.println("       stats [-words | -ngrams | -hybrid] <input>");
+		return 2;
+	}
+
+	/* The token mode named by a command line option, or null if it names none */
+	private static Tokenizer.Mode token_mode(String option) {
+		if (option.equals("-words"))
+			return Tokenizer.Mode.WORDS;
+		if (option.equals("-ngrams"))
+			return Tokenizer.Mode.NGRAMS;
+		if (option.equals("-hybrid"))
+			return Tokenizer.Mode.HYBRID;
+		return null;
+	}
+
+	/* A buffered file, or the standard input for - */
+	private static InputStream open_stream(String path) throws FileNotFoundException {
+		if (path.equals("-"))
+			return System.in;
+		return new BufferedInputStream(new FileInputStream(path), CHUNK_SIZE);
+	}
+
+	/* A buffered file, or the standard output for - */
+	private static OutputStream create_stream(String path) throws FileNotFoundException {
+		if (path.equals("-"))
+			return new FilterOutputStream(System.out) {
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					out.write(b, off, len);
+				}
+
+				@Override
+				public void close() throws IOException {
+					flush(); // The standard output stays open
+				}
+			};
+		return new BufferedOutputStream(new FileOutputStream(path), CHUNK_SIZE);
+	}
+
+	/**
+	 * Reads the whole input file into a single string. Newlines are kept, since
+	 * they are symbols like any other character. Prefer the streaming methods
+	 * (open_data, compute_distribution(Reader) and encode(CodeTable, Reader,
+	 * BitWriter)) for big files, since this one needs the entire file on the heap.
+	 *
+	 * @param inputFile name of the file inside the inputData folder
+	 * @return the contents of the file, or null if it could not be read
+	 */
 	public static String load_data(String inputFile) {
-		BufferedReader in = null;
-		String line = "";
+		PipelineMetrics.Span span = PipelineMetrics.begin(Stage.LOAD);
+		Reader in = null;
+		StringBuilder data = new StringBuilder();
 		try {
 			/*
-			 * We create a new reader that accepts UTF-8 encoding and extract the input
-			 * string from the file, and we return it
+			 * We create a new reader that accepts UTF-8 encoding and copy the file into
+			 * the builder one chunk at a time, and we return it
 			 */
-			in = new BufferedReader(new InputStreamReader(new FileInputStream("inputData/" + inputFile), "UTF-8"));
-			line = in.readLine();
+			in = open_data(inputFile);
+			char[] buffer = new char[CHUNK_SIZE];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+				data.append(buffer, 0, read);
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
+			return null;
 		} catch (IOException e) {
 			e.printStackTrace();
+			return null;
 		} finally {
 			if (in != null)
 				try {
@@ -59,69 +261,278 @@ public class HuffManTree {
 					e.printStackTrace();
 				}
 		}
-		return line;
+		span.end(new File("inputData/" + inputFile).length(), data.length());
+		return data.toString();
 	}
 
 	/**
+	 * Opens a UTF-8 reader over a file inside the inputData folder. The caller is
+	 * responsible for closing it.
 	 *
-	 * Loops through the input string and if the hashtable already contains that
-	 * character in the input, we add 1 to the frequency of said character.
-	 * 
-	 * Else, it is the first time we see that character so we set the frequency to
-	 * one.
+	 * @param inputFile name of the file inside the inputData folder
+	 * @return a buffered reader positioned at the beginning of the file
+	 * @throws FileNotFoundException if the file does not exist
+	 */
+	public static Reader open_data(String inputFile) throws FileNotFoundException {
+		try {
+			return new BufferedReader(new InputStreamReader(new FileInputStream("inputData/" + inputFile), "UTF-8"),
+					CHUNK_SIZE);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e); // UTF-8 is always supported
+		}
+	}
+
+	/**
+	 * Maps a file inside the inputData folder into memory, so the pipeline can
+	 * scan its bytes without copying them into chars or strings. Files bigger
+	 * than 2 GB are mapped as several segments.
+	 *
+	 * @param inputFile name of the file inside the inputData folder
+	 * @return the mapped bytes of the file
+	 * @throws IOException if the file cannot be opened or mapped
+	 */
+	public static MappedInput map_data(String inputFile) throws IOException {
+		return new MappedInput("inputData/" + inputFile);
+	}
+
+	/**
+	 *
+	 * Counts how many times each character appears in the input string. The
+	 * counting is done by compute_distribution, which needs no allocation per
+	 * character, and only the distinct characters are copied into the map.
 	 *
 	 * @param input text file string
 	 * @return a map with the input characters mapping to their frequencies
 	 * 
 	 */
 	public static Map<String, Integer> compute_fd(String input) {
-		Map<String, Integer> map = new HashTableSC<String, Integer>(new SimpleHashFunction<String>());
-		for (int i = 0; i < input.length(); i++) {
-			String s = String.valueOf(input.charAt(i));
-			if (map.containsKey(s)) {
-				int freq = map.get(s);
-				map.put(s, freq + 1);
-			} else {
-				map.put(s, 1);
-			}
+		return compute_distribution(input).toMap();
+	}
+
+	/**
+	 * Streaming version of compute_fd. The input is read CHUNK_SIZE characters at
+	 * a time, so only the frequencies and one chunk are ever kept in memory. The
+	 * reader is not closed.
+	 *
+	 * @param in reader positioned at the start of the input
+	 * @return a map with the input characters mapping to their frequencies
+	 * @throws IOException if the input cannot be read
+	 */
+	public static Map<String, Integer> compute_fd(Reader in) throws IOException {
+		return compute_distribution(in).toMap();
+	}
+
+	/**
+	 * Counts the characters (code points) of the input string into a dense table
+	 * indexed by the character itself.
+	 *
+	 * @param input text file string
+	 * @return the frequency distribution of the characters in the input
+	 */
+	public static FrequencyDistribution compute_distribution(CharSequence input) {
+		PipelineMetrics.Span span = PipelineMetrics.begin(Stage.COUNT);
+		FrequencyTable table = new FrequencyTable();
+		table.addChars(input);
+		FrequencyDistribution fd = table.toDistribution();
+		span.end(0, input.length());
+		return fd;
+	}
+
+	/**
+	 * Streaming version of compute_distribution. The reader is not closed.
+	 *
+	 * @param in reader positioned at the start of the input
+	 * @return the frequency distribution of the characters in the input
+	 * @throws IOException if the input cannot be read
+	 */
+	public static FrequencyDistribution compute_distribution(Reader in) throws IOException {
+		PipelineMetrics.Span span = PipelineMetrics.begin(Stage.COUNT);
+		FrequencyTable table = new FrequencyTable();
+		char[] buffer = new char[CHUNK_SIZE];
+		long chars = 0;
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			table.addChars(buffer, 0, read);
+			chars += read;
 		}
-		return map;
+		FrequencyDistribution fd = table.toDistribution();
+		span.end(0, chars);
+		return fd;
+	}
+
+	/**
+	 * Counts the bytes of a mapped file. Every byte is a symbol, which for ASCII
+	 * text is the same as counting the characters.
+	 *
+	 * @param in the mapped file
+	 * @return the frequency distribution of the bytes in the file
+	 */
+	public static FrequencyDistribution compute_distribution(MappedInput in) {
+		PipelineMetrics.Span span = PipelineMetrics.begin(Stage.COUNT);
+		FrequencyDistribution fd = in.count();
+		span.end(in.size(), in.size());
+		return fd;
+	}
+
+	/**
+	 * Counts the tokens of a mapped file, such as its words or n-grams, which
+	 * become the symbols of the code instead of single characters.
+	 *
+	 * @param in        the mapped file
+	 * @param tokenizer splits the file into tokens and keeps their ids
+	 * @return the frequency distribution of the token ids
+	 */
+	public static FrequencyDistribution compute_distribution(MappedInput in, Tokenizer tokenizer) {
+		PipelineMetrics.Span span = PipelineMetrics.begin(Stage.COUNT);
+		FrequencyDistribution fd = in.count(tokenizer);
+		span.end(in.size(), fd.total());
+		return fd;
+	}
+
+	/**
+	 * Parallel version of compute_distribution. The input is split into chunks
+	 * that are counted on the common fork/join pool and merged at the end; the
+	 * result is the same as the sequential one.
+	 *
+	 * @param input text file string
+	 * @return the frequency distribution of the characters in the input
+	 */
+	public static FrequencyDistribution compute_distribution_parallel(CharSequence input) {
+		PipelineMetrics.Span span = PipelineMetrics.begin(Stage.COUNT);
+		FrequencyDistribution fd = new ParallelFrequencyCounter().countChars(input);
+		span.end(0, input.length());
+		return fd;
 	}
 
 	/**
 	 *
 	 * Creates a key value node taken from the map in compute_fd. Goes through each
-	 * key and adds them to a sorted list. Then it loops through the sorted list and
-	 * starts building the tree, from leaves to the root
+	 * key and adds them to a binary heap. Then it repeatedly takes the two smallest
+	 * nodes out of the heap and puts back their parent, building the tree from the
+	 * leaves to the root in O(n log n)
 	 *
 	 * @param map node containing a key and its frequency
 	 * @return the frequencies of the keys
 	 * 
 	 */
 	public static BTNode<Integer, String> huffman_tree(Map<String, Integer> map) {
-		SortedList<BTNode<Integer, String>> sL = new SortedArrayList<BTNode<Integer, String>>(map.size());
-
+		PipelineMetrics.Span span = PipelineMetrics.begin(Stage.TREE);
+		BTNode<Integer, String>[] leaves = node_array(map.size());
+		int n = 0;
 		for (String k : map.getKeys()) {
-			sL.add(new BTNode<Integer, String>(map.get(k), k));
+			leaves[n++] = new BTNode<Integer, String>(map.get(k), k);
 		}
-		for (int i = sL.size() - 1; i >= 1; i--) {
-			BTNode<Integer, String> l = sL.removeIndex(0);
-			BTNode<Integer, String> r = sL.removeIndex(0);
+		PriorityQueue<BTNode<Integer, String>> heap = new BinaryHeap<BTNode<Integer, String>>(leaves);
+
+		for (int i = heap.size() - 1; i >= 1; i--) {
+			BTNode<Integer, String> l = heap.removeMin();
+			BTNode<Integer, String> r = heap.removeMin();
 			int nodeFreq = l.getKey() + r.getKey();
 			String nodeSymbol = l.getValue() + r.getValue();
 			BTNode<Integer, String> dad = new BTNode<Integer, String>(nodeFreq, nodeSymbol);
 
 			dad.setLeftChild(l);
 			dad.setRightChild(r);
-			sL.add(dad);
+			heap.add(dad);
 
 		}
-		BTNode<Integer, String> test = sL.removeIndex(0);
+		BTNode<Integer, String> test = heap.removeMin();
 		// BinaryTreePrinter.print(test);
+		span.end(0, n);
 		return test;
 
 	}
 
+	/**
+	 * Same as huffman_tree, but built straight from the result of
+	 * compute_distribution. Frequencies are kept as longs, since a big input can
+	 * have more than Integer.MAX_VALUE occurrences of a character.
+	 *
+	 * @param fd the frequency distribution of the input
+	 * @return the root of the Huffman tree
+	 */
+	public static BTNode<Long, String> huffman_tree(FrequencyDistribution fd) {
+		PipelineMetrics.Span span = PipelineMetrics.begin(Stage.TREE);
+		BTNode<Long, String>[] leaves = node_array(fd.size());
+		for (int i = 0; i < fd.size(); i++) {
+			leaves[i] = new BTNode<Long, String>(fd.getFrequency(i), fd.getSymbolText(i));
+		}
+		PriorityQueue<BTNode<Long, String>> heap = new BinaryHeap<BTNode<Long, String>>(leaves);
+
+		for (int i = heap.size() - 1; i >= 1; i--) {
+			BTNode<Long, String> l = heap.removeMin();
+			BTNode<Long, String> r = heap.removeMin();
+			BTNode<Long, String> dad = new BTNode<Long, String>(l.getKey() + r.getKey(), l.getValue() + r.getValue());
+
+			dad.setLeftChild(l);
+			dad.setRightChild(r);
+			heap.add(dad);
+		}
+		BTNode<Long, String> root = heap.removeMin();
+		span.end(0, fd.size());
+		return root;
+	}
+
+	/* An array of nodes; an array of a generic type cannot be created, so an array of wildcards is cast */
+	@SuppressWarnings("unchecked")
+	private static <K extends Comparable<? super K>, V extends Comparable<? super V>> BTNode<K, V>[] node_array(int size) {
+		return (BTNode<K, V>[]) new BTNode<?, ?>[size];
+	}
+
+	/**
+	 * Builds the tree in linear time from leaves that are already sorted by
+	 * frequency, with two queues instead of a heap: one holds the leaves, in
+	 * order, and the other the parents, which are created in order of frequency
+	 * too. The two smallest nodes are therefore always at the front of the
+	 * queues. Ties may be broken differently than in huffman_tree, but the code
+	 * lengths are just as optimal.
+	 *
+	 * @param leaves the leaves of the tree, sorted by increasing frequency
+	 * @return the root of the Huffman tree, or null if there are no leaves
+	 */
+	public static BTNode<Long, String> huffman_tree_sorted(List<BTNode<Long, String>> leaves) {
+		int n = leaves.size();
+		if (n == 0)
+			return null;
+		List<BTNode<Long, String>> parents = new ArrayList<BTNode<Long, String>>(Math.max(n - 1, 1));
+		int[] fronts = new int[2]; // next leaf and next parent to be taken
+
+		for (int i = n - 1; i >= 1; i--) {
+			BTNode<Long, String> l = take_smallest(leaves, parents, fronts);
+			BTNode<Long, String> r = take_smallest(leaves, parents, fronts);
+			BTNode<Long, String> dad = new BTNode<Long, String>(l.getKey() + r.getKey(), l.getValue() + r.getValue());
+
+			dad.setLeftChild(l);
+			dad.setRightChild(r);
+			parents.add(dad);
+		}
+		return n == 1 ? leaves.get(0) : parents.last();
+	}
+
+	/* Takes the smaller of the nodes at the front of the two queues */
+	private static BTNode<Long, String> take_smallest(List<BTNode<Long, String>> leaves,
+			List<BTNode<Long, String>> parents, int[] fronts) {
+		if (fronts[0] < leaves.size()
+				&& (fronts[1] == parents.size() || leaves.get(fronts[0]).compareTo(parents.get(fronts[1])) <= 0))
+			return leaves.get(fronts[0]++);
+		return parents.get(fronts[1]++);
+	}
+
+	/**
+	 * Creates a leaf for every symbol of the distribution and sorts them by
+	 * frequency with MergeSort, as huffman_tree_sorted expects.
+	 *
+	 * @param fd the frequency distribution of the input
+	 * @return the leaves sorted by increasing frequency
+	 */
+	public static List<BTNode<Long, String>> sorted_leaves(FrequencyDistribution fd) {
+		List<BTNode<Long, String>> leaves = new ArrayList<BTNode<Long, String>>(Math.max(fd.size(), 1));
+		for (int i = 0; i < fd.size(); i++)
+			leaves.add(new BTNode<Long, String>(fd.getFrequency(i), fd.getSymbolText(i)));
+		new MergeSort<BTNode<Long, String>>(new NodeComparator<Long, String>()).sortList(leaves);
+		return leaves;
+	}
+
 	/**
 	 *
 	 * Calls the method prefix in order to build the key's code.
@@ -130,52 +541,387 @@ public class HuffManTree {
 	 * @return the frequencies of the keys
 	 * 
 	 */
-	public static Map<String, String> huffman_code(BTNode<Integer, String> huffManTree) {
+	public static <K extends Comparable<? super K>> Map<String, String> huffman_code(BTNode<K, String> huffManTree) {
+		PipelineMetrics.Span span = PipelineMetrics.begin(Stage.CODE);
 		Map<String, String> map = new HashTableSC<>(new SimpleHashFunction<>());
 		String code = "";
 		prefix(huffManTree, map, code);
+		span.end(0, map.size());
 		return map;
 
 	}
 
 	/**
 	 *
-	 * First checks if it's a leaf and if it is then just add that key with it's
-	 * corresponding code to the map. If it's not a leaf then recursively travel
-	 * through the nodes adding 1s and 0s to it's code depending on the path taken
-	 * to that key.
+	 * Adds every leaf below N to the map with its code as 0s and 1s: the given
+	 * code followed by a 0 for every left turn and a 1 for every right turn on
+	 * the path from N to the leaf. The tree is walked with an explicit stack, so
+	 * a degenerate tree cannot overflow the call stack, and the path is kept in a
+	 * single buffer, so only the strings put in the map are allocated. The leaves
+	 * may hold any string, and the codes may be of any length.
 	 *
 	 * @param N    node in the tree
 	 * @param map  node containing a key and its frequency
 	 * @param code a string that contains the key's code in 0s and 1s
 	 * 
 	 */
-	public static void prefix(BTNode<Integer, String> N, Map<String, String> map, String code) {
-		if (N.getLeftChild() == null && N.getRightChild() == null) {
-			map.put(N.getValue(), code);
-		} else {
-			prefix(N.getLeftChild(), map, code + "0");
-			prefix(N.getRightChild(), map, code + "1");
+	public static <K extends Comparable<? super K>> void prefix(BTNode<K, String> N, Map<String, String> map,
+			String code) {
+		char[] path = new char[16];
+		BTNode<K, String>[] stack = node_array(16);
+		char[] stackBits = new char[16]; // the turn taken to reach each node
+		int[] stackLengths = new int[16];
+		int top = 0;
+		if (N != null) {
+			stack[top++] = N;
+		}
+
+		while (top > 0) {
+			BTNode<K, String> node = stack[--top];
+			int length = stackLengths[top];
+			stack[top] = null;
+			if (length > 0) {
+				if (length > path.length)
+					path = Arrays.copyOf(path, 2 * path.length);
+				path[length - 1] = stackBits[top];
+			}
+			if (node.getLeftChild() == null && node.getRightChild() == null) {
+				map.put(node.getValue(), code + new String(path, 0, length));
+			} else {
+				if (top + 2 > stack.length) {
+					stack = Arrays.copyOf(stack, 2 * stack.length);
+					stackBits = Arrays.copyOf(stackBits, stack.length);
+					stackLengths = Arrays.copyOf(stackLengths, stack.length);
+				}
+				/* The right child goes first, so the left one is taken first */
+				stack[top] = node.getRightChild();
+				stackBits[top] = '1';
+				stackLengths[top++] = length + 1;
+				stack[top] = node.getLeftChild();
+				stackBits[top] = '0';
+				stackLengths[top++] = length + 1;
+			}
+		}
+	}
+
+	/**
+	 * Same codes as huffman_code, read off the tree, but stored as primitives in
+	 * a CodeTable instead of as strings in a map. Every leaf must hold a single
+	 * code point, as the trees built from a FrequencyDistribution do.
+	 *
+	 * @param huffManTree the root of the huffman tree, or null if it is empty
+	 * @return the code of every symbol, as given by the tree
+	 * @throws IllegalArgumentException If a leaf is deeper than
+	 *                                  CodeTable.MAX_CODE_LENGTH or is not a
+	 *                                  single code point
+	 */
+	public static <K extends Comparable<? super K>> CodeTable huffman_code_table(BTNode<K, String> huffManTree) {
+		PipelineMetrics.Span span = PipelineMetrics.begin(Stage.CODE);
+		CodeTable table = code_walk(huffManTree);
+		span.end(0, table.size());
+		return table;
+	}
+
+	/*
+	 * Walks the tree in preorder with an explicit stack, so a degenerate tree
+	 * cannot overflow the call stack, carrying the code of every node as the bits
+	 * of a long and its length. Every leaf must be a single code point, as the
+	 * leaves built from a FrequencyDistribution are; prefix handles any string
+	 */
+	private static <K extends Comparable<? super K>> CodeTable code_walk(BTNode<K, String> root) {
+		int[] symbols = new int[16];
+		long[] codes = new long[16];
+		int[] lengths = new int[16];
+		int leaves = 0;
+		BTNode<K, String>[] stack = node_array(16);
+		long[] stackCodes = new long[16];
+		int[] stackLengths = new int[16];
+		int top = 0;
+		if (root != null) {
+			stack[top++] = root;
+		}
+
+		while (top > 0) {
+			BTNode<K, String> N = stack[--top];
+			long code = stackCodes[top];
+			int length = stackLengths[top];
+			stack[top] = null;
+			if (N.getLeftChild() == null && N.getRightChild() == null) {
+				if (leaves == symbols.length) {
+					symbols = Arrays.copyOf(symbols, 2 * leaves);
+					codes = Arrays.copyOf(codes, 2 * leaves);
+					lengths = Arrays.copyOf(lengths, 2 * leaves);
+				}
+				String symbol = N.getValue();
+				if (symbol.isEmpty() || symbol.length() != Character.charCount(symbol.codePointAt(0)))
+					throw new IllegalArgumentException("Leaf is not a single code point: \"" + symbol + "\"");
+				symbols[leaves] = symbol.codePointAt(0);
+				codes[leaves] = code;
+				lengths[leaves++] = length;
+			} else {
+				if (length == CodeTable.MAX_CODE_LENGTH)
+					throw new IllegalArgumentException("Code longer than " + CodeTable.MAX_CODE_LENGTH + " bits");
+				if (top + 2 > stack.length) {
+					stack = Arrays.copyOf(stack, 2 * stack.length);
+					stackCodes = Arrays.copyOf(stackCodes, stack.length);
+					stackLengths = Arrays.copyOf(stackLengths, stack.length);
+				}
+				/* The right child goes first, so the left one is taken first */
+				stack[top] = N.getRightChild();
+				stackCodes[top] = code << 1 | 1;
+				stackLengths[top++] = length + 1;
+				stack[top] = N.getLeftChild();
+				stackCodes[top] = code << 1;
+				stackLengths[top++] = length + 1;
+			}
+		}
+
+		/* Sort by symbol, dragging the index of the leaf along */
+		long[] order = new long[leaves];
+		for (int i = 0; i < leaves; i++)
+			order[i] = (long) symbols[i] << 32 | i;
+		Arrays.sort(order);
+		int[] sortedSymbols = new int[leaves];
+		long[] sortedCodes = new long[leaves];
+		int[] sortedLengths = new int[leaves];
+		for (int i = 0; i < leaves; i++) {
+			int leaf = (int) order[i];
+			sortedSymbols[i] = symbols[leaf];
+			sortedCodes[i] = codes[leaf];
+			sortedLengths[i] = lengths[leaf];
+		}
+		return new CodeTable(sortedSymbols, sortedCodes, sortedLengths);
+	}
+
+	/**
+	 * Canonical version of huffman_code. Only the depth of every leaf is taken
+	 * from the tree; the codes themselves are assigned by CodeTable.canonical, so
+	 * they do not depend on how ties were broken while building the tree, and
+	 * the code lengths alone are enough to rebuild them.
+	 *
+	 * @param huffManTree the root of the huffman tree
+	 * @return the canonical code of every symbol
+	 */
+	public static <K extends Comparable<? super K>> CodeTable huffman_code_canonical(BTNode<K, String> huffManTree) {
+		PipelineMetrics.Span span = PipelineMetrics.begin(Stage.CODE);
+		CodeTable tree = code_walk(huffManTree);
+
+		int[] symbols = new int[tree.size()];
+		int[] lengths = new int[tree.size()];
+		for (int i = 0; i < tree.size(); i++) {
+			symbols[i] = tree.getSymbol(i);
+			lengths[i] = tree.getLength(i);
 		}
+		CodeTable table = CodeTable.canonical(symbols, lengths);
+		span.end(0, symbols.length);
+		return table;
+	}
 
+	/**
+	 * Length limited version of huffman_code_canonical. The code lengths are
+	 * computed with package-merge, so no code is longer than maxLength bits while
+	 * the encoded size stays as small as possible under that limit.
+	 *
+	 * @param fd        the frequency distribution of the input
+	 * @param maxLength the longest code allowed, such as 12, 15 or 32
+	 * @return the canonical code of every symbol
+	 */
+	public static CodeTable huffman_code_limited(FrequencyDistribution fd, int maxLength) {
+		PipelineMetrics.Span span = PipelineMetrics.begin(Stage.CODE);
+		int[] symbols = new int[fd.size()];
+		long[] frequencies = new long[fd.size()];
+		for (int i = 0; i < fd.size(); i++) {
+			symbols[i] = fd.getSymbol(i);
+			frequencies[i] = fd.getFrequency(i);
+		}
+		CodeTable table = CodeTable.canonical(symbols, LengthLimitedCode.lengths(frequencies, maxLength));
+		span.end(0, symbols.length);
+		return table;
 	}
 
 	/**
-	 * Converts the input to it's corresponding code
+	 * Converts the input to it's corresponding code. The bits are packed eight
+	 * per byte, and every character is encoded through a CodeTable lookup.
 	 *
 	 * @param map  a map containing the symbol mapping to it's code
 	 * @param data contains the input file words
-	 * @return a string that contains the key's code in 0s and 1s
+	 * @return the packed bits of the key's codes
 	 */
-	public static String encode(Map<String, String> map, String data) {
-		String code = "";
+	public static BitWriter encode(Map<String, String> map, String data) {
+		BitWriter out = new BitWriter(Math.max(data.length() / 2, 1));
+		encode(CodeTable.fromMap(map), data, out);
+		return out;
+	}
+
+	/**
+	 * Writes the code of every character of the input to out.
+	 *
+	 * @param table the code of every symbol
+	 * @param data  contains the input file words
+	 * @param out   destination of the bits
+	 */
+	public static void encode(CodeTable table, CharSequence data, BitWriter out) {
+		PipelineMetrics.Span span = PipelineMetrics.begin(Stage.ENCODE);
+		for (int i = 0; i < data.length();) {
+			int c = Character.codePointAt(data, i);
+			table.encode(c, out);
+			i += Character.charCount(c);
+		}
+		span.end(0, data.length());
+	}
+
+	/**
+	 * Writes the code of every byte of a mapped file to out.
+	 *
+	 * @param table the code of every byte value
+	 * @param in    the mapped file
+	 * @param out   destination of the bits
+	 */
+	public static void encode(CodeTable table, MappedInput in, BitWriter out) {
+		PipelineMetrics.Span span = PipelineMetrics.begin(Stage.ENCODE);
+		in.encode(table, out);
+		span.end(in.size(), in.size());
+	}
+
+	/**
+	 * Writes the code of every token of a mapped file to out.
+	 *
+	 * @param table     the code of every token id
+	 * @param in        the mapped file
+	 * @param tokenizer the tokenizer that counted the file
+	 * @param out       destination of the bits
+	 */
+	public static void encode(CodeTable table, MappedInput in, Tokenizer tokenizer, BitWriter out) {
+		PipelineMetrics.Span span = PipelineMetrics.begin(Stage.ENCODE);
+		long bits = out.bitLength();
+		in.encode(table, tokenizer, out);
+		span.end(in.size(), out.bitLength() - bits);
+	}
+
+	/**
+	 * Block version of encode. The input is split into blocks of
+	 * BlockEncoder.DEFAULT_BLOCK_SIZE characters that are encoded concurrently on
+	 * the common fork/join pool, with an index of where each block starts.
+	 *
+	 * @param table the code of every symbol
+	 * @param data  contains the input file words
+	 * @return the encoded blocks and their index
+	 */
+	public static EncodedBlocks encode_blocks(CodeTable table, CharSequence data) {
+		return new BlockEncoder().encode(table, data);
+	}
+
+	/**
+	 * Streaming version of encode. Reads the input CHUNK_SIZE characters at a
+	 * time and writes the code of every character to out as soon as it is read,
+	 * so neither the input nor the encoded output is held in memory. The reader
+	 * is not closed.
+	 *
+	 * @param table the code of every symbol
+	 * @param in    reader positioned at the start of the input
+	 * @param out   destination of the bits
+	 * @return the amount of characters that were encoded
+	 * @throws IOException if the input cannot be read
+	 */
+	public static long encode(CodeTable table, Reader in, BitWriter out) throws IOException {
+		PipelineMetrics.Span span = PipelineMetrics.begin(Stage.ENCODE);
+		char[] buffer = new char[CHUNK_SIZE];
+		long symbols = 0;
+		int carried = 0; // a high surrogate waiting for its pair in the next chunk
+		int read;
+		while ((read = in.read(buffer, carried, buffer.length - carried)) != -1) {
+			int end = carried + read;
+			int limit = Character.isHighSurrogate(buffer[end - 1]) ? end - 1 : end;
+			for (int i = 0; i < limit; symbols++) {
+				int c = Character.codePointAt(buffer, i, limit);
+				table.encode(c, out);
+				i += Character.charCount(c);
+			}
+			carried = end - limit;
+			buffer[0] = buffer[end - 1];
+		}
+		if (carried > 0) {
+			table.encode(buffer[0], out);
+			symbols++;
+		}
+		span.end(0, symbols);
+		return symbols;
+	}
 
-		for (int i = 0; i < data.length(); i++) {
-			String k = String.valueOf(data.charAt(i));
-			code += map.get(k);
+	/**
+	 * Runs the whole pipeline over a file without ever loading it completely: a
+	 * first pass computes the frequencies, and once the code is known a second
+	 * pass encodes the file into out as packed bytes.
+	 *
+	 * @param inputFile name of the file inside the inputData folder
+	 * @param out       destination of the packed bits, which is not closed
+	 * @return the code of every symbol, or null if the file is empty
+	 * @throws IOException if reading the input or writing the output fails
+	 */
+	public static CodeTable encode_file(String inputFile, OutputStream out) throws IOException {
+		FrequencyDistribution computeFD;
+		Reader in = open_data(inputFile);
+		try {
+			computeFD = compute_distribution(in);
+		} finally {
+			in.close();
 		}
-		return code;
+		if (computeFD.isEmpty())
+			return null;
+
+		CodeTable huffManCode = huffman_code_table(huffman_tree(computeFD));
+		BitWriter bits = new BitWriter(out);
+		in = open_data(inputFile);
+		try {
+			encode(huffManCode, in, bits);
+		} finally {
+			in.close();
+		}
+		bits.flush();
+		return huffManCode;
+	}
+
+	/**
+	 * Converts the packed bits produced by encode back into the original text.
+	 *
+	 * @param map     a map containing the symbol mapping to it's code
+	 * @param encoded the packed bits of the key's codes
+	 * @param symbols the amount of characters that were encoded
+	 * @return the original text
+	 */
+	public static String decode(Map<String, String> map, byte[] encoded, int symbols) {
+		PipelineMetrics.Span span = PipelineMetrics.begin(Stage.DECODE);
+		HuffmanDecoder decoder = new HuffmanDecoder(CodeTable.fromMap(map));
+		String text = decoder.decodeText(new BitReader(encoded), symbols);
+		span.end(encoded.length, symbols);
+		return text;
+	}
 
+	/**
+	 * Streaming version of decode. Reads the packed bits from in and writes the
+	 * characters to out CHUNK_SIZE at a time. Neither stream is closed.
+	 *
+	 * @param table   the code of every symbol
+	 * @param in      source of the packed bits
+	 * @param symbols the amount of characters that were encoded
+	 * @param out     destination of the original text
+	 * @throws IOException if writing the output fails
+	 */
+	public static void decode(CodeTable table, InputStream in, long symbols, Writer out) throws IOException {
+		PipelineMetrics.Span span = PipelineMetrics.begin(Stage.DECODE);
+		HuffmanDecoder decoder = new HuffmanDecoder(table);
+		BitReader bits = new BitReader(in);
+		char[] buffer = new char[CHUNK_SIZE];
+		int size = 0;
+		for (long i = 0; i < symbols; i++) {
+			if (size >= buffer.length - 1) { // leave room for a surrogate pair
+				out.write(buffer, 0, size);
+				size = 0;
+			}
+			size += Character.toChars(decoder.decode(bits), buffer, size);
+		}
+		out.write(buffer, 0, size);
+		span.end(0, symbols);
 	}
 
 	/**
@@ -191,11 +937,11 @@ public class HuffManTree {
 	 * @param frequencyDistribution map containing a key with its frequency
 	 * @param encoded               map containing the key and its code
 	 * @param data                  contains the input file words
-	 * @param result                data converted into 0s and 1s
+	 * @param result                data converted into packed bits
 	 * 
 	 */
 	public static void process_results(Map<String, Integer> frequencyDistribution, Map<String, String> encoded,
-			String data, String result) {
+			String data, BitWriter result) {
 
 		SortedArrayList<BTNode<Integer, String>> sL = new SortedArrayList<BTNode<Integer, String>>(
 				frequencyDistribution.size());
@@ -218,10 +964,10 @@ public class HuffManTree {
 		System.out.println(data);
 
 		System.out.println("Encoded String:");
-		System.out.println(result);
+		System.out.println(result.toBitString());
 
 		int originalBytes = data.getBytes().length;
-		int resultBytes = Math.round((float) result.getBytes().length / 8);
+		int resultBytes = (int) result.byteLength();
 		DecimalFormat d = new DecimalFormat("##.##");
 		String space = d.format(100 - (((float) ((float) resultBytes / (float) originalBytes)) * 100));
 
@@ -231,4 +977,18 @@ public class HuffManTree {
 
 	}
 
+	/**
+	 * Prints the encoded size, average code length, entropy and efficiency of a
+	 * code, computed from the frequencies and the code lengths alone. Unlike
+	 * process_results it needs neither the input nor the encoded output, so it
+	 * takes O(alphabet) time however big the input is.
+	 *
+	 * @param fd            the frequency distribution of the input
+	 * @param code          the code of every symbol
+	 * @param originalBytes the size of the input
+	 */
+	public static void process_statistics(FrequencyDistribution fd, CodeTable code, long originalBytes) {
+		System.out.println(new CompressionStats(fd, code, originalBytes));
+	}
+
 }
@@ -0,0 +1,159 @@
+package utils;
+
+/**
+ * Turns packed Huffman codes back into symbols. Instead of walking the tree
+ * one bit at a time, the decoder looks at the next lookupBits bits and finds
+ * the symbol in a table with an entry for every possible value of those bits.
+ * Codes longer than lookupBits continue into a second level table indexed by
+ * the following lookupBits bits, and so on, so every code is resolved in
+ * length / lookupBits lookups at most.
+ *
+ * Every level is a block of 2^lookupBits entries inside a single int array. An
+ * entry is either a symbol, stored as (symbol index << 8 | bits used), a link
+ * to the next level, stored as the complement of its offset, or 0 when no code
+ * starts with those bits.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class HuffmanDecoder {
+
+	/* 2^10 ints per level is small enough to stay in the L1 cache */
+	public static final int DEFAULT_LOOKUP_BITS = 10;
+
+	// private fields
+	private CodeTable codes;
+	private int lookupBits;
+	private int[] table;
+	private int tableSize; // entries in use
+	private int onlySymbol = -1; // set when a single symbol has the empty code
+
+	public HuffmanDecoder(CodeTable codes) {
+		this(codes, DEFAULT_LOOKUP_BITS);
+	}
+
+	/**
+	 * Builds the lookup tables for a code.
+	 *
+	 * @param codes      The code of every symbol
+	 * @param lookupBits Amount of bits resolved by each table, between 1 and 16
+	 * @throws IllegalArgumentException If the code is not prefix free
+	 */
+	public HuffmanDecoder(CodeTable codes, int lookupBits) {
+		if (codes == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		if (lookupBits < 1 || lookupBits > 16)
+			throw new IllegalArgumentException("Lookup bits must be between 1 and 16");
+		if (codes.size() >= 1 << 23)
+			throw new IllegalArgumentException("Too many symbols");
+		this.codes = codes;
+		this.lookupBits = lookupBits;
+		table = new int[1 << lookupBits];
+		tableSize = table.length;
+
+		for (int i = 0; i < codes.size(); i++) {
+			if (codes.getLength(i) == 0) {
+				if (codes.size() != 1)
+					throw new IllegalArgumentException("Only a single symbol may have the empty code");
+				onlySymbol = codes.getSymbol(i);
+			} else
+				insert(i, codes.getCode(i), codes.getLength(i));
+		}
+	}
+
+	/**
+	 * Reads one code and returns its symbol.
+	 *
+	 * @param in Source of the bits
+	 * @return The decoded symbol
+	 * @throws IllegalStateException If the bits are not a valid code or run out
+	 */
+	public int decode(BitReader in) {
+		if (onlySymbol >= 0)
+			return onlySymbol;
+		int offset = 0;
+		while (true) {
+			int entry = table[offset + in.peek(lookupBits)];
+			if (entry > 0) {
+				in.skip(entry & 0xFF);
+				return codes.getSymbol(entry >>> 8);
+			}
+			if (entry == 0)
+				throw new IllegalStateException("Invalid code at bit " + in.position());
+			in.skip(lookupBits);
+			offset = ~entry;
+		}
+	}
+
+	/**
+	 * Decodes several symbols into an array.
+	 *
+	 * @param in     Source of the bits
+	 * @param out    Destination of the symbols
+	 * @param offset Index of out where the first symbol goes
+	 * @param count  Amount of symbols to decode
+	 */
+	public void decode(BitReader in, int[] out, int offset, int count) {
+		for (int i = offset; i < offset + count; i++)
+			out[i] = decode(in);
+	}
+
+	/**
+	 * Decodes symbols that are Unicode code points into text.
+	 *
+	 * @param in    Source of the bits
+	 * @param count Amount of symbols to decode
+	 * @return The decoded text
+	 */
+	public String decodeText(BitReader in, int count) {
+		StringBuilder result = new StringBuilder(count);
+		for (int i = 0; i < count; i++)
+			result.appendCodePoint(decode(in));
+		return result.toString();
+	}
+
+	/**
+	 * Return the amount of table entries in use, to measure the memory taken.
+	 *
+	 * @return The size of all the levels together
+	 */
+	public int getTableSize() {
+		return tableSize;
+	}
+
+	private void insert(int index, long code, int length) {
+		int mask = (1 << lookupBits) - 1;
+		int offset = 0;
+		int remaining = length;
+		while (remaining > lookupBits) {
+			int slot = offset + ((int) (code >>> (remaining - lookupBits)) & mask);
+			if (table[slot] == 0) {
+				int level = newLevel(); // May replace the table, so not inlined
+				table[slot] = ~level;
+			} else if (table[slot] > 0)
+				throw new IllegalArgumentException("The code is not prefix free");
+			offset = ~table[slot];
+			remaining -= lookupBits;
+		}
+		/* Every entry whose first bits are the rest of the code decodes this symbol */
+		int first = offset + (((int) code & ((1 << remaining) - 1)) << (lookupBits - remaining));
+		int entry = index << 8 | remaining;
+		for (int slot = first; slot < first + (1 << (lookupBits - remaining)); slot++) {
+			if (table[slot] != 0)
+				throw new IllegalArgumentException("The code is not prefix free");
+			table[slot] = entry;
+		}
+	}
+
+	private int newLevel() {
+		int offset = tableSize;
+		tableSize += 1 << lookupBits;
+		if (tableSize > table.length) {
+			int[] newTable = new int[Math.max(2 * table.length, tableSize)];
+			System.arraycopy(table, 0, newTable, 0, offset);
+			table = newTable;
+		}
+		return offset;
+	}
+
+}
@@ -0,0 +1,125 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * Computes optimal code lengths that never exceed a maximum, using the
+ * package-merge algorithm of Larmore and Hirschberg. A plain Huffman code can
+ * be as long as the alphabet on very skewed inputs; with a limit every code
+ * fits in a machine word and the decoding tables have a bounded size.
+ *
+ * Package-merge works on "coins": every symbol is a coin of each width 2^-1 ..
+ * 2^-L worth its frequency. Starting from the narrowest width, the coins are
+ * paired into packages of the next width, which are merged with that width's
+ * coins, and so on. The cheapest 2n - 2 items of the widest list form the
+ * optimal solution, and the length of a symbol is the amount of its coins in
+ * them. Since the coins of every width are sorted the same way, it is enough
+ * to know how many coins each list contributes to the solution, which is what
+ * the version below keeps track of, in O(n L) time and memory.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class LengthLimitedCode {
+
+	/**
+	 * Return the optimal code lengths for the given frequencies such that none is
+	 * longer than maxLength. The result is a Huffman code whenever the Huffman
+	 * code already respects the limit.
+	 *
+	 * @param frequencies Frequency of every symbol, all of them positive
+	 * @param maxLength   The longest code allowed
+	 * @return The code length of the symbol at the same index
+	 * @throws IllegalArgumentException If 2^maxLength is less than the amount of
+	 *                                  symbols
+	 */
+	public static int[] lengths(long[] frequencies, int maxLength) {
+		int n = frequencies.length;
+		if (maxLength < 1 || maxLength > CodeTable.MAX_CODE_LENGTH)
+			throw new IllegalArgumentException("Maximum length must be between 1 and " + CodeTable.MAX_CODE_LENGTH);
+		if (maxLength < 31 && n > 1 << maxLength)
+			throw new IllegalArgumentException(n + " symbols do not fit in codes of " + maxLength + " bits");
+		int[] lengths = new int[n];
+		if (n == 0)
+			return lengths;
+		if (n == 1) {
+			lengths[0] = 1;
+			return lengths;
+		}
+
+		if (n >= 1 << 23)
+			throw new IllegalArgumentException("Too many symbols");
+
+		/* Sort the symbols by frequency; order[i] is the symbol of rank i */
+		long[] keyed = new long[n];
+		for (int i = 0; i < n; i++) {
+			if (frequencies[i] <= 0 || frequencies[i] >= 1L << 40)
+				throw new IllegalArgumentException("Frequencies must be between 1 and 2^40");
+			keyed[i] = frequencies[i] << 23 | i;
+		}
+		Arrays.sort(keyed);
+		long[] sorted = new long[n];
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+			sorted[i] = keyed[i] >>> 23;
+			order[i] = (int) (keyed[i] & ((1 << 23) - 1));
+		}
+
+		/*
+		 * Each list holds items sorted by weight. An item is either a single coin
+		 * (leaf) or a package of two items of the previous list. For every item we
+		 * keep its weight and, for packages, how many items of the previous list
+		 * came before it; that is enough to find, going back from the last list,
+		 * how many coins of each width are in the solution.
+		 */
+		int levels = Math.min(maxLength, n - 1); // No Huffman code is longer than n - 1 anyway
+		long[] previous = sorted.clone();
+		int[][] leafCounts = new int[levels][]; // leaves (coins) among the first k items of each list
+		leafCounts[0] = new int[n + 1];
+		for (int k = 0; k <= n; k++)
+			leafCounts[0][k] = k;
+		int[][] packageOrigin = new int[levels][]; // items of the previous list used by the first k items
+		packageOrigin[0] = new int[n + 1];
+
+		for (int level = 1; level < levels; level++) {
+			int packages = previous.length / 2;
+			long[] current = new long[n + packages];
+			int[] leaves = new int[current.length + 1];
+			int[] origin = new int[current.length + 1];
+			int leaf = 0, pack = 0, size = 0;
+			while (leaf < n || pack < packages) {
+				long packWeight = pack < packages ? previous[2 * pack] + previous[2 * pack + 1] : Long.MAX_VALUE;
+				if (leaf < n && sorted[leaf] <= packWeight) {
+					current[size] = sorted[leaf++];
+					leaves[size + 1] = leaves[size] + 1;
+					origin[size + 1] = origin[size];
+				} else {
+					current[size] = packWeight;
+					pack++;
+					leaves[size + 1] = leaves[size];
+					origin[size + 1] = 2 * pack;
+				}
+				size++;
+			}
+			leafCounts[level] = leaves;
+			packageOrigin[level] = origin;
+			previous = current;
+		}
+
+		/*
+		 * Take the cheapest 2n - 2 items of the last list and walk back: at each
+		 * list, the leaves among the taken items are coins of symbols of lowest
+		 * frequency, and the packages among them are the first items of the
+		 * previous list.
+		 */
+		int taken = 2 * n - 2;
+		for (int level = levels - 1; level >= 0; level--) {
+			int leavesTaken = leafCounts[level][taken];
+			for (int i = 0; i < leavesTaken; i++)
+				lengths[order[i]]++;
+			taken = packageOrigin[level][taken];
+		}
+		return lengths;
+	}
+
+}
@@ -0,0 +1,156 @@
+package utils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A file mapped into memory with FileChannel.map, so that counting and encoding
+ * read the bytes of the file straight from the page cache, with no copies into
+ * byte, char or String buffers. A single mapping cannot be bigger than 2 GB,
+ * so bigger files are mapped as several consecutive segments.
+ *
+ * In this mode the symbols are the bytes of the file (0 to 255), not the
+ * characters; for ASCII text both are the same.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class MappedInput {
+
+	/* Largest segment; a power of two so that blocks never straddle two segments */
+	public static final int SEGMENT_SIZE = 1 << 30;
+
+	// private fields
+	private MappedByteBuffer[] segments;
+	private long size;
+
+	/**
+	 * Maps a whole file, read only. The file may be closed, or even deleted,
+	 * afterwards; the mapping stays valid until it is garbage collected.
+	 *
+	 * @param path Location of the file
+	 * @throws IOException If the file cannot be opened or mapped
+	 */
+	public MappedInput(String path) throws IOException {
+		this(path, SEGMENT_SIZE);
+	}
+
+	/**
+	 * Maps a whole file in segments of a given size.
+	 *
+	 * @param path        Location of the file
+	 * @param segmentSize Largest amount of bytes in one segment
+	 * @throws IOException If the file cannot be opened or mapped
+	 */
+	public MappedInput(String path, int segmentSize) throws IOException {
+		if (segmentSize < 1)
+			throw new IllegalArgumentException("Segment size must be at least 1");
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			size = channel.size();
+			segments = new MappedByteBuffer[(int) ((size + segmentSize - 1) / segmentSize)];
+			for (int i = 0; i < segments.length; i++) {
+				long start = (long) i * segmentSize;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, size - start));
+			}
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Return the size of the file.
+	 *
+	 * @return The amount of bytes mapped
+	 */
+	public long size() {
+		return size;
+	}
+
+	public int segmentCount() {
+		return segments.length;
+	}
+
+	/**
+	 * Return a segment of the file. Every call returns a new buffer sharing the
+	 * same memory, so its position and limit can be changed freely.
+	 *
+	 * @param index Index of the segment
+	 * @return The bytes of that segment
+	 */
+	public ByteBuffer segment(int index) {
+		return segments[index].duplicate();
+	}
+
+	/**
+	 * Counts the bytes of the whole file.
+	 *
+	 * @return The frequency of every byte value
+	 */
+	public FrequencyDistribution count() {
+		FrequencyTable table = new FrequencyTable(256);
+		for (int i = 0; i < segments.length; i++)
+			table.addBytes(segment(i));
+		return table.toDistribution();
+	}
+
+	/**
+	 * Counts the bytes of the whole file on several cores.
+	 *
+	 * @param counter The counter that splits every segment among its threads
+	 * @return The frequency of every byte value
+	 */
+	public FrequencyDistribution count(ParallelFrequencyCounter counter) {
+		FrequencyTable table = new FrequencyTable(256);
+		for (int i = 0; i < segments.length; i++)
+			table.merge(counter.countBytesTable(segment(i)));
+		return table.toDistribution();
+	}
+
+	/**
+	 * Counts the tokens of the whole file, training the tokenizer first if its
+	 * mode needs it. The ids given to the tokens stay in the tokenizer.
+	 *
+	 * @param tokenizer Splits the bytes into tokens
+	 * @return The frequency of every token id
+	 */
+	public FrequencyDistribution count(Tokenizer tokenizer) {
+		for (int i = 0; i < segments.length; i++)
+			tokenizer.train(segment(i));
+		FrequencyTable table = new FrequencyTable();
+		for (int i = 0; i < segments.length; i++)
+			tokenizer.tokenize(segment(i), table::add);
+		return table.toDistribution();
+	}
+
+	/**
+	 * Writes the code of every token of the file.
+	 *
+	 * @param table     The code of every token id
+	 * @param tokenizer The tokenizer that counted the file
+	 * @param out       Destination of the bits
+	 */
+	public void encode(CodeTable table, Tokenizer tokenizer, BitWriter out) {
+		for (int i = 0; i < segments.length; i++)
+			tokenizer.tokenize(segment(i), token -> table.encode(token, out));
+	}
+
+	/**
+	 * Writes the code of every byte of the file.
+	 *
+	 * @param table The code of every byte value
+	 * @param out   Destination of the bits
+	 */
+	public void encode(CodeTable table, BitWriter out) {
+		for (int i = 0; i < segments.length; i++) {
+			ByteBuffer segment = segment(i);
+			for (int j = segment.position(); j < segment.limit(); j++)
+				table.encode(segment.get(j) & 0xFF, out);
+		}
+	}
+
+}
@@ -0,0 +1,11 @@
+package utils;
+
+public class NodeComparator<K extends Comparable<? super K>, V extends Comparable<? super V>>
+		implements Comparator<BTNode<K, V>> {
+
+	@Override
+	public int compare(BTNode<K, V> v1, BTNode<K, V> v2) {
+		return v1.compareTo(v2);
+	}
+
+}
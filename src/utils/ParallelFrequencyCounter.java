@@ -0,0 +1,137 @@
+package utils;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts symbol frequencies on several cores with fork/join. The input is split
+ * in halves until the pieces are smaller than a threshold; every piece is
+ * counted into a FrequencyTable of its own, so the threads never share memory
+ * while counting, and the tables are merged on the way back up. The result is
+ * exactly the same as counting sequentially.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class ParallelFrequencyCounter {
+
+	/* Big enough for the merge of two tables to be negligible */
+	public static final int DEFAULT_THRESHOLD = 1 << 20;
+
+	// private fields
+	private ForkJoinPool pool;
+	private int threshold;
+
+	public ParallelFrequencyCounter() {
+		this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * @param pool      The pool whose threads do the counting
+	 * @param threshold Pieces of the input of at most this size are not split
+	 */
+	public ParallelFrequencyCounter(ForkJoinPool pool, int threshold) {
+		if (pool == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		if (threshold < 1)
+			throw new IllegalArgumentException("Threshold must be at least 1");
+		this.pool = pool;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Counts the code points of a string.
+	 *
+	 * @param input Characters to count
+	 * @return The frequency of every code point
+	 */
+	public FrequencyDistribution countChars(CharSequence input) {
+		return pool.invoke(new CharTask(input, 0, input.length())).toDistribution();
+	}
+
+	/**
+	 * Counts the bytes between the position and the limit of a buffer, such as a
+	 * mapped file. The position of the buffer is not changed.
+	 *
+	 * @param input Bytes to count
+	 * @return The frequency of every byte value
+	 */
+	public FrequencyDistribution countBytes(ByteBuffer input) {
+		return countBytesTable(input).toDistribution();
+	}
+
+	/**
+	 * Same as countBytes, but returns the table itself so that the counts of
+	 * several buffers can be merged.
+	 *
+	 * @param input Bytes to count
+	 * @return The frequency of every byte value
+	 */
+	public FrequencyTable countBytesTable(ByteBuffer input) {
+		return pool.invoke(new ByteTask(input, input.position(), input.limit()));
+	}
+
+	private class CharTask extends RecursiveTask<FrequencyTable> {
+		private static final long serialVersionUID = 1L;
+		private CharSequence input;
+		private int start, end;
+
+		public CharTask(CharSequence input, int start, int end) {
+			this.input = input;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected FrequencyTable compute() {
+			int mid = start + (end - start) / 2;
+			/* Never separate the two halves of a surrogate pair */
+			if (end - start > threshold && Character.isHighSurrogate(input.charAt(mid - 1))
+					&& Character.isLowSurrogate(input.charAt(mid)))
+				mid++;
+			/* Count directly if the piece is small or is a single pair that cannot be split */
+			if (end - start <= threshold || mid == end) {
+				FrequencyTable table = new FrequencyTable();
+				table.addChars(input, start, end);
+				return table;
+			}
+			CharTask left = new CharTask(input, start, mid);
+			left.fork();
+			FrequencyTable result = new CharTask(input, mid, end).compute();
+			result.merge(left.join());
+			return result;
+		}
+	}
+
+	private class ByteTask extends RecursiveTask<FrequencyTable> {
+		private static final long serialVersionUID = 1L;
+		private ByteBuffer input;
+		private int start, end;
+
+		public ByteTask(ByteBuffer input, int start, int end) {
+			this.input = input;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected FrequencyTable compute() {
+			if (end - start <= threshold) {
+				ByteBuffer piece = input.duplicate(); // Every task needs its own position and limit
+				piece.limit(end);
+				piece.position(start);
+				FrequencyTable table = new FrequencyTable(256);
+				table.addBytes(piece);
+				return table;
+			}
+			int mid = start + (end - start) / 2;
+			ByteTask left = new ByteTask(input, start, mid);
+			left.fork();
+			FrequencyTable result = new ByteTask(input, mid, end).compute();
+			result.merge(left.join());
+			return result;
+		}
+	}
+
+}
@@ -0,0 +1,201 @@
+package utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Records how long each stage of the pipeline takes, how much it processes and
+ * how much memory it allocates, so a slow job can be traced to its stage. For
+ * every stage it keeps the amount of calls, the wall time, the bytes and
+ * symbols processed and the bytes allocated by the calling thread. The totals
+ * can be read one by one or as JSON, and every call is also committed as a
+ * StageEvent to Java Flight Recorder when it is available.
+ *
+ * Recording is off unless the system property huffman.metrics is true or
+ * setEnabled is called. While it is off, begin returns a shared span whose end
+ * does nothing, so the cost of the instrumentation is one volatile read.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class PipelineMetrics {
+
+	public enum Stage {
+		LOAD, COUNT, TREE, CODE, ENCODE, DECODE
+	}
+
+	private static final PipelineMetrics GLOBAL = new PipelineMetrics();
+	private static final Span DISABLED = new Span(null);
+	private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocationBean();
+	private static final boolean JFR = StageEvent.isAvailable();
+
+	private static volatile boolean enabled = Boolean.getBoolean("huffman.metrics");
+
+	// private fields
+	private long[] calls = new long[Stage.values().length];
+	private long[] nanos = new long[calls.length];
+	private long[] bytes = new long[calls.length];
+	private long[] symbols = new long[calls.length];
+	private long[] allocated = new long[calls.length];
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void setEnabled(boolean enabled) {
+		PipelineMetrics.enabled = enabled;
+	}
+
+	/**
+	 * Return the metrics every span records into.
+	 *
+	 * @return The metrics of the whole process
+	 */
+	public static PipelineMetrics global() {
+		return GLOBAL;
+	}
+
+	/**
+	 * Starts measuring a call of a stage.
+	 *
+	 * @param stage The stage that starts
+	 * @return The span to end when the stage finishes
+	 */
+	public static Span begin(Stage stage) {
+		if (!enabled)
+			return DISABLED;
+		return new Span(stage);
+	}
+
+	public synchronized long getCalls(Stage stage) {
+		return calls[stage.ordinal()];
+	}
+
+	public synchronized long getNanos(Stage stage) {
+		return nanos[stage.ordinal()];
+	}
+
+	public synchronized long getBytes(Stage stage) {
+		return bytes[stage.ordinal()];
+	}
+
+	public synchronized long getSymbols(Stage stage) {
+		return symbols[stage.ordinal()];
+	}
+
+	/**
+	 * Return the bytes allocated during a stage by the threads that ran it,
+	 * without the threads it handed work to. It is -1 if the JVM cannot tell.
+	 *
+	 * @param stage The stage
+	 * @return The allocated bytes
+	 */
+	public synchronized long getAllocatedBytes(Stage stage) {
+		return ALLOCATIONS == null ? -1 : allocated[stage.ordinal()];
+	}
+
+	public synchronized double getSymbolsPerSecond(Stage stage) {
+		int i = stage.ordinal();
+		return nanos[i] == 0 ? 0 : symbols[i] * 1e9 / nanos[i];
+	}
+
+	public synchronized void reset() {
+		for (int i = 0; i < calls.length; i++)
+			calls[i] = nanos[i] = bytes[i] = symbols[i] = allocated[i] = 0;
+	}
+
+	/**
+	 * Return the metrics of every stage that ran at least once, as a JSON object
+	 * keyed by the name of the stage.
+	 *
+	 * @return The metrics as JSON
+	 */
+	public synchronized String toJson() {
+		StringBuilder json = new StringBuilder("{");
+		for (Stage stage : Stage.values()) {
+			int i = stage.ordinal();
+			if (calls[i] == 0)
+				continue;
+			if (json.length() > 1)
+				json.append(',');
+			json.append('"').append(stage.name().toLowerCase()).append("\":{");
+			json.append("\"calls\":").append(calls[i]);
+			json.append(",\"wallNanos\":").append(nanos[i]);
+			json.append(",\"bytes\":").append(bytes[i]);
+			json.append(",\"symbols\":").append(symbols[i]);
+			json.append(",\"symbolsPerSecond\":").append(Math.round(getSymbolsPerSecond(stage)));
+			json.append(",\"allocatedBytes\":").append(getAllocatedBytes(stage));
+			json.append('}');
+		}
+		return json.append('}').toString();
+	}
+
+	private synchronized void record(Stage stage, long time, long processedBytes, long processedSymbols,
+			long allocatedBytes) {
+		int i = stage.ordinal();
+		calls[i]++;
+		nanos[i] += time;
+		bytes[i] += processedBytes;
+		symbols[i] += processedSymbols;
+		allocated[i] += allocatedBytes;
+	}
+
+	/**
+	 * One call of a stage, from begin to end.
+	 */
+	public static class Span {
+		private Stage stage;
+		private long start;
+		private long startAllocated;
+		private Object event; // a jdk.jfr.Event made by StageEvent, or null
+
+		private Span(Stage stage) {
+			this.stage = stage;
+			if (stage == null)
+				return;
+			if (JFR)
+				event = StageEvent.start(stage);
+			startAllocated = allocatedBytes();
+			start = System.nanoTime();
+		}
+
+		/**
+		 * Ends the call and records it.
+		 *
+		 * @param bytes   Amount of bytes the stage processed, 0 if it works on
+		 *                symbols only
+		 * @param symbols Amount of symbols the stage processed
+		 */
+		public void end(long bytes, long symbols) {
+			if (stage == null)
+				return;
+			long time = System.nanoTime() - start;
+			long allocated = allocatedBytes() - startAllocated;
+			GLOBAL.record(stage, time, bytes, symbols, allocated);
+			if (event != null)
+				StageEvent.finish(event, bytes, symbols, allocated);
+		}
+	}
+
+	private static long allocatedBytes() {
+		if (ALLOCATIONS == null)
+			return 0;
+		return ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/* Only HotSpot and its relatives can count the allocations of a thread */
+	private static com.sun.management.ThreadMXBean allocationBean() {
+		try {
+			ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if (bean instanceof com.sun.management.ThreadMXBean) {
+				com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) bean;
+				if (allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled())
+					return allocations;
+			}
+		} catch (LinkageError e) {
+			// Not available on this JVM
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,125 @@
+package utils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * A Java Flight Recorder event for one call of a pipeline stage, committed by
+ * PipelineMetrics. Its duration is the wall time of the stage, and it is
+ * recorded when a recording enables huffman.Stage.
+ *
+ * The project targets Java 8, which has no jdk.jfr, so the event type is
+ * defined at run time with jdk.jfr.EventFactory (Java 12 and later), found by
+ * reflection like the virtual threads of BatchCompressor. On older runtimes
+ * isAvailable is false and PipelineMetrics records without it.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+class StageEvent {
+
+	/* Indexes of the fields of the event */
+	private static final int STAGE = 0;
+	private static final int BYTES = 1;
+	private static final int SYMBOLS = 2;
+	private static final int ALLOCATED = 3;
+
+	private static Object factory; // a jdk.jfr.EventFactory, or null without JFR
+	private static Method newEvent, set, begin, end, commit, isEnabled, shouldCommit;
+
+	static {
+		try {
+			define();
+		} catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+			factory = null; // No usable JFR on this runtime
+		}
+	}
+
+	static boolean isAvailable() {
+		return factory != null;
+	}
+
+	/**
+	 * Starts an event of a stage.
+	 *
+	 * @param stage The stage being measured
+	 * @return The started event, or null if no recording wants it
+	 */
+	static Object start(PipelineMetrics.Stage stage) {
+		if (factory == null)
+			return null;
+		try {
+			Object event = newEvent.invoke(factory);
+			if (!(Boolean) isEnabled.invoke(event))
+				return null;
+			set.invoke(event, STAGE, stage.name());
+			begin.invoke(event);
+			return event;
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	static void finish(Object event, long bytes, long symbols, long allocated) {
+		try {
+			end.invoke(event);
+			if ((Boolean) shouldCommit.invoke(event)) {
+				set.invoke(event, BYTES, bytes);
+				set.invoke(event, SYMBOLS, symbols);
+				set.invoke(event, ALLOCATED, allocated);
+				commit.invoke(event);
+			}
+		} catch (ReflectiveOperationException e) {
+			// The stage itself is still recorded by PipelineMetrics
+		}
+	}
+
+	/* Builds the event type: a name, a label, a category, a description, and the four fields */
+	private static void define() throws ReflectiveOperationException {
+		Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+		Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+		Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+		Class<?> event = Class.forName("jdk.jfr.Event");
+		Constructor<?> element = annotationElement.getConstructor(Class.class, Object.class);
+		Constructor<?> descriptor = valueDescriptor.getConstructor(Class.class, String.class, java.util.List.class);
+		Class<? extends Annotation> name = annotation("jdk.jfr.Name");
+		Class<? extends Annotation> label = annotation("jdk.jfr.Label");
+		Class<? extends Annotation> category = annotation("jdk.jfr.Category");
+		Class<? extends Annotation> description = annotation("jdk.jfr.Description");
+		Class<? extends Annotation> dataAmount = annotation("jdk.jfr.DataAmount");
+
+		Object[] annotations = { element.newInstance(name, "huffman.Stage"),
+				element.newInstance(label, "Huffman Stage"),
+				element.newInstance(category, new String[] { "Huffman" }),
+				element.newInstance(description, "One call of a stage of the Huffman pipeline") };
+		Object[] fields = new Object[4];
+		fields[STAGE] = descriptor.newInstance(String.class, "stage",
+				Collections.singletonList(element.newInstance(label, "Stage")));
+		fields[BYTES] = descriptor.newInstance(long.class, "bytes",
+				Arrays.asList(element.newInstance(label, "Bytes"), element.newInstance(dataAmount, "BYTES")));
+		fields[SYMBOLS] = descriptor.newInstance(long.class, "symbols",
+				Collections.singletonList(element.newInstance(label, "Symbols")));
+		fields[ALLOCATED] = descriptor.newInstance(long.class, "allocated",
+				Arrays.asList(element.newInstance(label, "Allocated"), element.newInstance(dataAmount, "BYTES")));
+
+		Object created = eventFactory.getMethod("create", java.util.List.class, java.util.List.class).invoke(null,
+				Arrays.asList(annotations), Arrays.asList(fields));
+		newEvent = eventFactory.getMethod("newEvent");
+		set = event.getMethod("set", int.class, Object.class);
+		begin = event.getMethod("begin");
+		end = event.getMethod("end");
+		commit = event.getMethod("commit");
+		isEnabled = event.getMethod("isEnabled");
+		shouldCommit = event.getMethod("shouldCommit");
+		factory = created;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Class<? extends Annotation> annotation(String name) throws ClassNotFoundException {
+		return (Class<? extends Annotation>) Class.forName(name);
+	}
+
+}
@@ -0,0 +1,200 @@
+package utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.IntConsumer;
+
+import list.ArrayList;
+import list.List;
+import map.Map;
+import map.RobinHoodHashMap;
+
+/**
+ * Splits bytes into tokens that are used as the symbols of the code, instead
+ * of single characters. Every distinct token gets an id, in the order in which
+ * the tokens are first seen, and the ids are what gets counted and encoded.
+ * Concatenating the tokens gives back the original bytes, so no information is
+ * lost. The modes are:
+ *
+ * <ul>
+ * <li>WORDS: every run of letters and digits (and of bytes above 127, so the
+ * UTF-8 letters stay with their words) is a token, and every other byte is a
+ * token of its own.</li>
+ * <li>NGRAMS: every n consecutive bytes are a token.</li>
+ * <li>HYBRID: like WORDS, but words seen fewer than minCount times are split
+ * into n-grams, so that rare words do not make the dictionary grow.</li>
+ * </ul>
+ *
+ * Tokens are kept as strings with one character per byte (ISO-8859-1), so that
+ * any bytes can be a token.
+ *
+ * @author Natalia E. Lopez
+ *
+ */
+public class Tokenizer {
+
+	public enum Mode {
+		WORDS, NGRAMS, HYBRID
+	}
+
+	public static final int DEFAULT_NGRAM_LENGTH = 3;
+	public static final int DEFAULT_MIN_COUNT = 2;
+
+	/* Longer runs of letters are split, to bound the size of a token */
+	public static final int MAX_TOKEN_LENGTH = 64;
+
+	/* Most distinct tokens a dictionary holds, which bounds what a reader accepts */
+	public static final int MAX_TOKENS = 1 << 24;
+
+	private static final int INITIAL_CAPACITY = 1 << 16;
+
+	// private fields
+	private Mode mode;
+	private int ngramLength;
+	private int minCount;
+	private Map<String, Integer> ids;
+	private List<String> tokens;
+	private Map<String, Integer> wordCounts; // only for HYBRID
+	private byte[] scratch;
+
+	public Tokenizer(Mode mode) {
+		this(mode, DEFAULT_NGRAM_LENGTH, DEFAULT_MIN_COUNT);
+	}
+
+	/**
+	 * @param mode        How the bytes are split
+	 * @param ngramLength Amount of bytes of an n-gram, for NGRAMS and HYBRID
+	 * @param minCount    Least amount of times a word must be seen to stay
+	 *                    whole, for HYBRID
+	 */
+	public Tokenizer(Mode mode, int ngramLength, int minCount) {
+		if (mode == null)
+			throw new IllegalArgumentException("Parameter cannot be null.");
+		if (ngramLength < 1 || ngramLength > MAX_TOKEN_LENGTH)
+			throw new IllegalArgumentException("N-gram length must be between 1 and " + MAX_TOKEN_LENGTH);
+		if (minCount < 1)
+			throw new IllegalArgumentException("Minimum count must be at least 1");
+		this.mode = mode;
+		this.ngramLength = ngramLength;
+		this.minCount = minCount;
+		ids = new RobinHoodHashMap<String, Integer>(INITIAL_CAPACITY, key -> key.hashCode() & 0x7FFFFFFF);
+		tokens = new ArrayList<String>(INITIAL_CAPACITY);
+		if (mode == Mode.HYBRID)
+			wordCounts = new RobinHoodHashMap<String, Integer>(INITIAL_CAPACITY, key -> key.hashCode() & 0x7FFFFFFF);
+		scratch = new byte[MAX_TOKEN_LENGTH];
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Counts the words of the input, which HYBRID needs to know before splitting
+	 * it. Every part of the input must be trained before any is tokenized; the
+	 * other modes need no training.
+	 *
+	 * @param data The bytes between the position and the limit, which is not
+	 *             changed
+	 */
+	public void train(ByteBuffer data) {
+		if (mode != Mode.HYBRID)
+			return;
+		for (int i = data.position(), end = data.limit(); i < end;) {
+			int j = wordEnd(data, i, end);
+			if (j > i + 1) {
+				String word = text(data, i, j);
+				wordCounts.merge(word, 1, Integer::sum);
+			}
+			i = j;
+		}
+	}
+
+	/**
+	 * Splits the input into tokens and hands their ids to an action, adding the
+	 * tokens seen for the first time to the dictionary. Tokenizing the same
+	 * input again gives the same ids.
+	 *
+	 * @param data   The bytes between the position and the limit, which is not
+	 *               changed
+	 * @param action What to do with the id of every token, in order
+	 * @throws IllegalStateException If the dictionary would grow past MAX_TOKENS
+	 */
+	public void tokenize(ByteBuffer data, IntConsumer action) {
+		int end = data.limit();
+		for (int i = data.position(); i < end;) {
+			if (mode == Mode.NGRAMS) {
+				int j = Math.min(i + ngramLength, end);
+				action.accept(id(text(data, i, j)));
+				i = j;
+				continue;
+			}
+			int j = wordEnd(data, i, end);
+			String token = text(data, i, j);
+			if (mode == Mode.HYBRID && j > i + 1) {
+				Integer count = wordCounts.get(token);
+				if (count == null || count < minCount) {
+					for (int k = i; k < j; k += ngramLength)
+						action.accept(id(text(data, k, Math.min(k + ngramLength, j))));
+					i = j;
+					continue;
+				}
+			}
+			action.accept(id(token));
+			i = j;
+		}
+	}
+
+	/**
+	 * Return the amount of distinct tokens seen so far.
+	 *
+	 * @return The size of the dictionary, one more than the highest id
+	 */
+	public int size() {
+		return tokens.size();
+	}
+
+	/**
+	 * Return the token with a given id.
+	 *
+	 * @param id Id of the token
+	 * @return The token, one character per byte
+	 */
+	public String getToken(int id) {
+		return tokens.get(id);
+	}
+
+	public byte[] getTokenBytes(int id) {
+		return tokens.get(id).getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	private int id(String token) {
+		if (tokens.size() == MAX_TOKENS && !ids.containsKey(token))
+			throw new IllegalStateException("More than " + MAX_TOKENS + " distinct tokens");
+		Integer id = ids.putIfAbsent(token, tokens.size());
+		if (id == null) {
+			id = tokens.size();
+			tokens.add(token);
+		}
+		return id;
+	}
+
+	/* The end of the word starting at i, or i + 1 if there is no word there */
+	private static int wordEnd(ByteBuffer data, int i, int end) {
+		int j = i + 1;
+		if (isWordByte(data.get(i)))
+			while (j < end && j - i < MAX_TOKEN_LENGTH && isWordByte(data.get(j)))
+				j++;
+		return j;
+	}
+
+	private static boolean isWordByte(byte b) {
+		return b < 0 || (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9');
+	}
+
+	private String text(ByteBuffer data, int start, int end) {
+		for (int i = start; i < end; i++)
+			scratch[i - start] = data.get(i);
+		return new String(scratch, 0, end - start, StandardCharsets.ISO_8859_1);
+	}
+
+}